@@ -5,35 +5,61 @@ import java.io.Serializable;
 public class Ball implements Serializable {
 
 	private static final long serialVersionUID = 1L;
-	private Dog dog;
-	private ParkLocation parkLocation;
+	private ParkState state;
+	private int index;
 	
 	public Ball(Dog dog) {
-		this.dog = dog;
-		this.parkLocation = new ParkLocation(1.0, 0.0);
+		this.state = dog.getState();
+		state.ensureWritable();
+		this.index = state.addBall(this, dog.getIndex());
+	}
+	
+	Ball(ParkState state, int index) {
+		this.state = state;
+		this.index = index;
+	}
+	
+	int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Get the ID of the ball, which is the same in every snapshot, view and clone of the park
+	 *
+	 * @return  dense ID that ParkState.getBall resolves
+	 *
+	 */
+	public int getID() {
+		return index;
 	}
 	
 	public void setLocation(ParkLocation parkLocation) {
-		this.parkLocation = parkLocation;
+		state.ensureWritable();
+		state.ballRows[index] = parkLocation.getRow();
+		state.ballColumns[index] = parkLocation.getColumn();
 	}
 	
 	public void setLocation(Double row, Double column) {
-		this.parkLocation = new ParkLocation(row, column);
+		setLocation(new ParkLocation(row, column));
 	}
 	
 	public ParkLocation getLocation() {
-		return parkLocation;
+		return new ParkLocation(state.ballRows[index], state.ballColumns[index]);
 	}
 	
 	public String getLocationAsString() {
-		return parkLocation.toString();
+		return getLocation().toString();
 	}
 	
 	public void setDog(Dog dog) {
-		this.dog = dog;
+		state.ensureWritable();
+		int dogIndex = dog == null || dog.getState() != state ? ParkState.NONE : dog.getIndex();
+		state.ballDogs[index] = dogIndex;
+		if(dogIndex != ParkState.NONE)
+			state.dogBalls[dogIndex] = index;
 	}
 	
 	public Dog getDog() {
-		return dog;
+		return state.getDog(state.ballDogs[index]);
 	}
 }
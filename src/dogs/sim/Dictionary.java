@@ -10,6 +10,10 @@ public class Dictionary {
 	
 	public static List<String> words;
 	
+	// Loaded once per process and only read afterwards, so every park and simulation can look words up concurrently
+	private static Set<String> wordSet = new HashSet<>();
+	private static boolean loaded = false;
+	
 	static {
 		words = new ArrayList<>();
 		BufferedReader dictionaryReader;
@@ -27,18 +31,25 @@ public class Dictionary {
 					words.add(ownerNameAsString);
 			}
 			words.add("_");
+			wordSet.addAll(words);
+			loaded = true;
 		} catch(Exception e) {
-			Log.writeToLogFile("Cannot read dictionary file!");
+			// Reported through load(), in the log of every simulation that needs the dictionary
 		}
 	}
 	
+	// Calling it initializes the class, which reads the dictionary file in the static block above
+	static boolean load() {
+		return loaded;
+	}
+	
 	public static boolean isInDictionary(String newWord) {
-		return words.contains(newWord.toLowerCase());
+		return wordSet.contains(newWord.toLowerCase());
 	}
 	
 	public static boolean areAllInDictionary(List<String> newWords) {
 		for(String newWord : newWords)
-			if(!words.contains(newWord.toLowerCase()))
+			if(!wordSet.contains(newWord.toLowerCase()))
 				return false;
 		return true;
 	}
@@ -1,7 +1,6 @@
 package dogs.sim;
 
 import java.io.Serializable;
-import java.util.Random;
 
 import dogs.sim.DogReference.Breed;
 
@@ -12,164 +11,174 @@ public class Dog implements Serializable {
 	public static final Double MAX_WAITING_TIME = 30.0;
 	public static final Double TOTAL_EXERCISE_TIME = 1800.0;
 	
-	private Breed breed;
-	private Integer realID, randomID;
-	private Owner owner, personWaitingFor, personHeadingFor;
-	private ParkLocation parkLocation;
-	private boolean isRunning = false, isWalking = false;
-	private boolean isHeadingForBall = false, isHeadingForPerson = false, isWaitingForPerson = true;
-	private boolean hasBall = true;
-	private Double waitingTimeRemaining = MAX_WAITING_TIME;
-	private Double exerciseTimeRemaining = TOTAL_EXERCISE_TIME;
+	private ParkState state;
+	private int index;
 	
 	public Dog(Breed breed, Owner owner, Integer realID) {
-		this.breed = breed;
-		this.owner = owner;
-		this.realID = realID;
-		this.personWaitingFor = owner;
-		this.personHeadingFor = null;
-		this.randomID = new Random().nextInt();
-		this.parkLocation = new ParkLocation(1.0, 0.0);
+		this.state = owner.getState();
+		state.ensureWritable();
+		this.index = state.addDog(this, breed, owner.getIndex(), realID);
+	}
+	
+	Dog(ParkState state, int index) {
+		this.state = state;
+		this.index = index;
+	}
+	
+	ParkState getState() {
+		return state;
+	}
+	
+	int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Get the ID of the dog, which is the same in every snapshot, view and clone of the park
+	 *
+	 * @return  dense ID that ParkState.getDog resolves
+	 *
+	 */
+	public int getID() {
+		return index;
 	}
 	
 	public Breed getBreed() {
-		return breed;
+		return state.dogBreeds[index];
 	}
 	
 	public Integer getRealID() {
-		return realID;
+		return state.dogRealIDs[index];
 	}
 	
 	public Integer getRandomID() {
-		return randomID;
+		return state.dogRandomIDs[index];
 	}
 
 	public void setLocation(ParkLocation parkLocation) {
-		this.parkLocation = parkLocation;
+		state.ensureWritable();
+		state.dogRows[index] = parkLocation.getRow();
+		state.dogColumns[index] = parkLocation.getColumn();
 	}
 	
 	public void setLocation(Double row, Double column) {
-		this.parkLocation = new ParkLocation(row, column);
+		setLocation(new ParkLocation(row, column));
 	}
 	
 	public ParkLocation getLocation() {
-		return parkLocation;
+		return new ParkLocation(state.dogRows[index], state.dogColumns[index]);
 	}
 	
 	public String getLocationAsString() {
-		return parkLocation.toString();
+		return getLocation().toString();
 	}
 	
 	public Owner getOwner() {
-		return owner;
+		return state.getOwner(state.dogOwners[index]);
+	}
+
+	Ball getBall() {
+		return state.getBall(state.dogBalls[index]);
 	}
 	
 	public Double getWaitingTimeRemaining() {
-		return waitingTimeRemaining;
+		return state.toSeconds(state.dogWaitingTicks[index]);
 	}
 	
 	public void resetWaitingTimeRemaining() {
-		this.waitingTimeRemaining = MAX_WAITING_TIME;
+		state.ensureWritable();
+		state.dogWaitingTicks[index] = state.toTicks(MAX_WAITING_TIME);
 	}
 
 	public Double getWaitingTimeCompleted() {
-		return MAX_WAITING_TIME - waitingTimeRemaining;
+		return state.toSeconds(state.toTicks(MAX_WAITING_TIME) - state.dogWaitingTicks[index]);
 	}
 
 	public void setWaitingTimeRemaining(double waitingTime) {
-		this.waitingTimeRemaining = waitingTime;
+		state.ensureWritable();
+		state.dogWaitingTicks[index] = state.toTicks(waitingTime);
 	}
 
 	public void decreaseWaitingTimeRemaining(double waitingTime) {
-		if(waitingTimeRemaining - waitingTime >= 0.0)
-			waitingTimeRemaining -= waitingTime;
-		else
-			waitingTimeRemaining = 0.0;		
+		state.ensureWritable();
+		state.decreaseDogWaitingTicks(index, state.toTicks(waitingTime));
 	}
 	
 	public Double getExerciseTimeRemaining() {
-		return exerciseTimeRemaining;
+		return state.toSeconds(state.getDogExerciseTicks(index));
 	}
 	
 	public Double getExerciseTimeCompleted() {
-		return TOTAL_EXERCISE_TIME - exerciseTimeRemaining;
+		return state.toSeconds(state.toTicks(TOTAL_EXERCISE_TIME) - state.getDogExerciseTicks(index));
 	}
 
 	public void setExerciseTimeRemaining(double exerciseTime) {
-		this.exerciseTimeRemaining = exerciseTime;
+		state.ensureWritable();
+		state.dogExerciseTicks[index] = state.toTicks(exerciseTime);
 	}
 	
 	public void decreaseExerciseTimeRemaining(double exerciseTime) {
-		if(exerciseTimeRemaining - exerciseTime >= 0.0)
-			exerciseTimeRemaining -= exerciseTime;
-		else
-			exerciseTimeRemaining = 0.0;
+		state.ensureWritable();
+		state.decreaseDogExerciseTicks(index, state.toTicks(exerciseTime));
 	}
 	
 	public Double getRunningSpeed() {
-		return DogReference.getRunningSpeed(breed);
+		return state.dogRunningSpeeds[index];
 	}
 
 	public Double getWalkingSpeed() {
-		return DogReference.getWalkingSpeed(breed);
+		return state.dogWalkingSpeeds[index];
 	}
 
 	public Owner getOwnerWaitingFor() {
-		return personWaitingFor;
+		return state.getOwner(state.dogOwnersWaitingFor[index]);
 	}
 	
 	public void setOwnerWaitingFor(Owner owner) {
-		this.personWaitingFor = owner;
+		state.ensureWritable();
+		state.dogOwnersWaitingFor[index] = indexOf(owner);
+		state.updateDogActivity(index);
 	}
 
 	public Owner getOwnerHeadingFor() {
-		return personHeadingFor;
+		return state.getOwner(state.dogOwnersHeadingFor[index]);
 	}
 
 	public void setOwnerHeadingFor(Owner owner) {
-		this.personHeadingFor = owner;
+		state.ensureWritable();
+		state.dogOwnersHeadingFor[index] = indexOf(owner);
 	}
 
 	public boolean isWaitingForItsOwner() {
-		return owner.equals(personWaitingFor) || 
-				(personWaitingFor != null && 
-				 owner.getNameAsString().equals(personWaitingFor.getNameAsString())
-				);
+		return isWaitingForOwner(getOwner());
 	}
 
 	public boolean isWaitingForOwner(Owner owner) {
-		return owner.equals(personWaitingFor) || 
-				(owner != null && 
-				 personWaitingFor != null && 
-				 owner.getNameAsString().equals(personWaitingFor.getNameAsString())
-				);
+		return isSameOwner(owner, state.dogOwnersWaitingFor[index]);
 	}
 	
 	public boolean isHeadingForItsOwner() {
-		return owner.equals(personHeadingFor) || 
-				(personHeadingFor != null && 
-				 owner.getNameAsString().equals(personHeadingFor.getNameAsString())
-				);
+		return isHeadingForOwner(getOwner());
 	}
 
 	public boolean isHeadingForOwner(Owner owner) {
-		return owner.equals(personHeadingFor) || 
-				(owner != null && 
-				 personHeadingFor != null && 
-				 owner.getNameAsString().equals(personHeadingFor.getNameAsString())
-				);
+		return isSameOwner(owner, state.dogOwnersHeadingFor[index]);
+	}
+
+	public DogState getDogState() {
+		return state.getDogState(index);
 	}
 
 	public boolean isRunning() {
-		return isRunning;
+		return state.isDogInState(index, ParkState.RUNNING);
 	}
 	
 	public boolean isWalking() {
-		return isWalking;
+		return state.isDogInState(index, ParkState.WALKING);
 	}
 	
 	public boolean isMoving() {
-		return isRunning || isWalking;		
+		return state.isDogInState(index, (byte) (ParkState.RUNNING | ParkState.WALKING));
 	}
 
 	public boolean isStationary() {
@@ -177,78 +186,81 @@ public class Dog implements Serializable {
 	}
 	
 	public boolean isNotRunning() {
-		return !isRunning;
+		return !isRunning();
 	}
 	
 	public boolean isNotWalking() {
-		return !isWalking;
+		return !isWalking();
 	}
 
 	public boolean isHeadingForBall() {
-		return isHeadingForBall;
+		return state.isDogInState(index, ParkState.HEADING_FOR_BALL);
 	}
 	
 	public boolean isHeadingForPerson() {
-		return isHeadingForPerson;
+		return state.isDogInState(index, ParkState.HEADING_FOR_PERSON);
 	}
 
 	public boolean isWaitingForPerson() {
-		return isWaitingForPerson;
+		return state.isDogInState(index, ParkState.WAITING_FOR_PERSON);
 	}
 	
 	public void setRunning() {
-		isRunning = true;
-		isWalking = false;
+		state.ensureWritable();
+		state.setDogRunning(index);
 	}
 	
 	public void setWalking() {
-		isRunning = false;
-		isWalking = true;
+		state.ensureWritable();
+		state.setDogWalking(index);
 	}
 	
 	public void setStationary() {
-		isRunning = false;
-		isWalking = false;
+		state.ensureWritable();
+		state.setDogStationary(index);
 	}
 	
 	public void setHeadingForBall() {
-		isHeadingForBall = true;
-		isHeadingForPerson = false;
-		isWaitingForPerson = false;
-		setHasBall(false);
-		setRunning();
-		setOwnerWaitingFor(null);
-		setOwnerHeadingFor(null);
-		resetWaitingTimeRemaining();
-	}
-	
-	public void setHeadingForPerson(Owner owner) {		
-		isHeadingForBall = false;
-		isHeadingForPerson = true;
-		isWaitingForPerson = false;
-		setHasBall(true);
-		setWalking();
-		setOwnerHeadingFor(owner);
-		setOwnerWaitingFor(null);
-		resetWaitingTimeRemaining();
+		state.ensureWritable();
+		state.setDogHeadingForBall(index);
+	}
+	
+	public void setHeadingForPerson(Owner owner) {
+		state.ensureWritable();		
+		state.setDogHeadingForPerson(index, indexOf(owner));
 	}
 	
 	public void setWaitingForPerson(Owner owner) {
-		isHeadingForBall = false;
-		isHeadingForPerson = false;
-		isWaitingForPerson = true;
-		setHasBall(true);
-		setStationary();
-		setOwnerHeadingFor(null);
-		setOwnerWaitingFor(owner);
-		resetWaitingTimeRemaining();
+		state.ensureWritable();
+		state.setDogWaitingForPerson(index, indexOf(owner));
 	}
 	
 	public boolean hasBall() {
-		return hasBall;
+		return state.isDogInState(index, ParkState.HAS_BALL);
 	}
 	
 	public void setHasBall(boolean hasBall) {
-		this.hasBall = hasBall;
+		state.ensureWritable();
+		state.setDogHasBall(index, hasBall);
+	}
+	
+	// Owners of another park are matched by name
+	private boolean isSameOwner(Owner owner, int ownerIndex) {
+		if(owner == null || ownerIndex == ParkState.NONE)
+			return owner == null && ownerIndex == ParkState.NONE;
+		if(owner.getState().isSamePark(state))
+			return owner.getIndex() == ownerIndex;
+		return owner.getNameAsEnum() == state.ownerNames[ownerIndex];
 	}
-}
\ No newline at end of file
+
+	private int indexOf(Owner owner) {
+		if(owner == null)
+			return ParkState.NONE;
+		if(owner.getState().isSamePark(state) && owner.getIndex() < state.numOwners)
+			return owner.getIndex();
+		for(int i = 0; i < state.numOwners; i++)
+			if(state.ownerNames[i] == owner.getNameAsEnum())
+				return i;
+		return ParkState.NONE;
+	}
+}
@@ -0,0 +1,83 @@
+package dogs.sim;
+
+
+public enum DogState {
+
+	IDLE(DogState.IDLE_CODE, 0, false),
+	WAITING(DogState.WAITING_CODE, ParkState.WAITING_FOR_PERSON | ParkState.HAS_BALL, false),
+	RETURNING(DogState.RETURNING_CODE, ParkState.HEADING_FOR_PERSON | ParkState.HAS_BALL | ParkState.WALKING, true),
+	CHASING(DogState.CHASING_CODE, ParkState.HEADING_FOR_BALL | ParkState.RUNNING, true),
+	TROTTING(DogState.TROTTING_CODE, ParkState.HEADING_FOR_BALL | ParkState.WALKING, true),
+	PAUSED(DogState.PAUSED_CODE, ParkState.HEADING_FOR_BALL, true),
+	FETCHED(DogState.FETCHED_CODE, ParkState.HEADING_FOR_BALL | ParkState.HAS_BALL, true);
+
+	// Codes stored per dog in the park state, which the engine switches on without touching the enum
+	public static final byte IDLE_CODE = 0;
+	public static final byte WAITING_CODE = 1;
+	public static final byte RETURNING_CODE = 2;
+	public static final byte CHASING_CODE = 3;
+	public static final byte TROTTING_CODE = 4;
+	public static final byte PAUSED_CODE = 5;
+	public static final byte FETCHED_CODE = 6;
+
+	public enum Transition { RUN, WALK, STOP, TAKE_BALL, DROP_BALL, HEAD_FOR_BALL, HEAD_FOR_PERSON, WAIT_FOR_PERSON }
+
+	private static final DogState[] STATES = values();
+
+	/*
+	 * Rows follow the order of the states and columns the order of the transitions.
+	 * A dog that holds its ball while not heading for or waiting for a person has
+	 * fetched it, and a dog heading for a person always carries its ball and walks.
+	 */
+	private static final DogState[][] TRANSITIONS = {
+		/* IDLE      */ { IDLE,      IDLE,      IDLE,      FETCHED,   IDLE,      CHASING, RETURNING, WAITING },
+		/* WAITING   */ { WAITING,   WAITING,   WAITING,   WAITING,   WAITING,   CHASING, RETURNING, WAITING },
+		/* RETURNING */ { RETURNING, RETURNING, RETURNING, RETURNING, RETURNING, CHASING, RETURNING, WAITING },
+		/* CHASING   */ { CHASING,   TROTTING,  PAUSED,    FETCHED,   CHASING,   CHASING, RETURNING, WAITING },
+		/* TROTTING  */ { CHASING,   TROTTING,  PAUSED,    FETCHED,   TROTTING,  CHASING, RETURNING, WAITING },
+		/* PAUSED    */ { CHASING,   TROTTING,  PAUSED,    FETCHED,   PAUSED,    CHASING, RETURNING, WAITING },
+		/* FETCHED   */ { FETCHED,   FETCHED,   FETCHED,   FETCHED,   PAUSED,    CHASING, RETURNING, WAITING }
+	};
+
+	private final byte code;
+	private final byte bits;
+	private final boolean moving;
+
+	/**
+	 * Behavioural state of a dog
+	 *
+	 * A dog is in exactly one of these states, stored as a single byte per dog. The
+	 * flags the dog getters report are fixed for every state, and every change of
+	 * state goes through the transition table.
+	 *
+	 * @param code    code of the state, equal to its position in the declaration
+	 * @param bits    dog state bits of the park state that hold in this state
+	 * @param moving  whether a dog in this state moves or decides in every sub-step
+	 *
+	 */
+	DogState(byte code, int bits, boolean moving) {
+		this.code = code;
+		this.bits = (byte) bits;
+		this.moving = moving;
+	}
+
+	public static DogState of(byte code) {
+		return STATES[code];
+	}
+
+	public byte getCode() {
+		return code;
+	}
+
+	public byte getBits() {
+		return bits;
+	}
+
+	public boolean isMoving() {
+		return moving;
+	}
+
+	public DogState next(Transition transition) {
+		return TRANSITIONS[ordinal()][transition.ordinal()];
+	}
+}
@@ -0,0 +1,94 @@
+package dogs.sim;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+
+public class IndexSet implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final int NONE = -1;
+
+	private long[] words;
+
+	/**
+	 * Set of entity indices backed by a bitset
+	 *
+	 * Adding and removing an index is O(1) and iteration visits the indices in
+	 * increasing order. Indices sharing a 64-bit word must not be changed from
+	 * different threads, so parallel phases split their ranges on word boundaries.
+	 *
+	 * @param capacity  number of indices that can be stored before growing
+	 *
+	 */
+	public IndexSet(int capacity) {
+		this.words = new long[getNumWords(capacity)];
+	}
+
+	public static int getNumWords(int capacity) {
+		return (capacity + 63) >>> 6;
+	}
+
+	public void ensureCapacity(int capacity) {
+		if(getNumWords(capacity) > words.length)
+			words = Arrays.copyOf(words, Math.max(2 * words.length, getNumWords(capacity)));
+	}
+
+	public void add(int index) {
+		ensureCapacity(index + 1);
+		words[index >>> 6] |= 1L << index;
+	}
+
+	public void remove(int index) {
+		int word = index >>> 6;
+		if(word < words.length)
+			words[word] &= ~(1L << index);
+	}
+
+	public void set(int index, boolean contained) {
+		if(contained)
+			add(index);
+		else
+			remove(index);
+	}
+
+	public boolean contains(int index) {
+		int word = index >>> 6;
+		return word < words.length && (words[word] & (1L << index)) != 0;
+	}
+
+	public long getWord(int word) {
+		return word < words.length ? words[word] : 0L;
+	}
+
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	/**
+	 * Find the smallest index in the set that is not below an index
+	 *
+	 * @param fromIndex  index to start searching from
+	 * @return           next index in the set, or -1 if there is none
+	 *
+	 */
+	public int nextIndex(int fromIndex) {
+		int word = fromIndex >>> 6;
+		if(word >= words.length)
+			return NONE;
+
+		long bits = words[word] & (-1L << fromIndex);
+		while(bits == 0) {
+			if(++word == words.length)
+				return NONE;
+			bits = words[word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	public IndexSet copy() {
+		IndexSet copy = new IndexSet(0);
+		copy.words = words.clone();
+		return copy;
+	}
+}
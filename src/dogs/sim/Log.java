@@ -9,11 +9,35 @@ import java.util.Date;
 
 public class Log {
 
-	private static FileWriter fileWriter;
-	private static boolean isVerbose = false;
-	private static boolean shouldLog = false;
-	
-	public static void setLogFile(String filename) {
+	private FileWriter fileWriter;
+	private final boolean isVerbose;
+	private final boolean shouldLog;
+
+	/**
+	 * Log that writes nothing, for simulations run without a log file
+	 *
+	 */
+	public Log() {
+		this(null, false);
+	}
+
+	/**
+	 * Log of one simulation
+	 *
+	 * Every simulation writes to a log of its own, so simulations running in the
+	 * same process never share or overwrite each other's log file. Messages are
+	 * also printed to the standard output, and only when there is a log file.
+	 *
+	 * @param filename   path of the log file, or null for no log
+	 * @param isVerbose  whether verbose messages are logged as well
+	 *
+	 */
+	public Log(String filename, boolean isVerbose) {
+		this.isVerbose = isVerbose;
+		this.shouldLog = filename != null;
+		if(filename == null)
+			return;
+
 		try {
 			fileWriter = new FileWriter(filename, false);
 		} catch(IOException e) {
@@ -21,34 +45,30 @@ public class Log {
 		}
 	}
 
-	public static void assignVerbosityStatus(boolean isVerbose) {
-		Log.isVerbose = isVerbose;
+	public boolean getVerbosityStatus() {
+		return isVerbose;
 	}
 
-	public static boolean getVerbosityStatus() {
-		return Log.isVerbose;
-	}
-	
-	public static void assignLoggingStatus(boolean shouldLog) {
-		Log.shouldLog = shouldLog;
+	public boolean getLoggingStatus() {
+		return shouldLog;
 	}
-	
-	public static boolean getLoggingStatus() {
-		return Log.shouldLog;
+
+	public boolean getVerboseLoggingStatus() {
+		return isVerbose && shouldLog;
 	}
-	
-	public static void writeToVerboseLogFile(String content) {
+
+	public void writeToVerboseLogFile(String content) {
 		if(isVerbose)
 			writeToLogFile(content);
 	}
-	
-	public static void writeToLogFile(String content) {
+
+	public synchronized void writeToLogFile(String content) {
 		if(!shouldLog)
 			return;
-		
+
 		DateFormat dateFormat = new SimpleDateFormat("[yyyy/MM/dd HH:mm:ss.SSS] ");
 		Date date = new Date();
-		
+
 		String datedContent = dateFormat.format(date) + content + "\n";
 		System.out.println(datedContent);
 
@@ -59,10 +79,10 @@ public class Log {
 			fileWriter.append(datedContent);
 		} catch(IOException e) {
 			e.printStackTrace();
-		}		
+		}
 	}
 
-	public static void closeLogFile() {
+	public synchronized void closeLogFile() {
 		if(fileWriter == null)
 			return;
 
@@ -74,4 +94,4 @@ public class Log {
 
 		fileWriter = null;
 	}
-}
\ No newline at end of file
+}
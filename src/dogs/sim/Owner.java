@@ -1,6 +1,8 @@
 package dogs.sim;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import dogs.sim.Directive.Instruction;
@@ -9,44 +11,34 @@ import dogs.sim.Directive.Instruction;
 public class Owner implements Serializable {
 
 	private static final long serialVersionUID = 1L;
-	private OwnerName name;
+	private static double dataError = 1E-7;
+	public static final Double ACTION_TIME = 5.0;
+	private ParkState state;
+	private int index;
 	private List<Dog> dogs;
-	private ParkLocation parkLocation;
-	private Instruction currentAction;
-	private Double actionTimeRemaining;
-	private String currentSignalWord;
-	private Double allExerciseCompletionTime;
-	private boolean allExerciseCompleted;
 	
 
 	public Owner() {
-		this.parkLocation = new ParkLocation();
-		this.currentAction = Instruction.NOTHING;
-		this.actionTimeRemaining = 0.0;
-		this.currentSignalWord = "_";
-		this.allExerciseCompletionTime = Double.MAX_VALUE;
-		this.allExerciseCompleted = false;
+		this(new ParkState(), (OwnerName) null);
 	}
 	
 	public Owner(OwnerName name) {
-		this.name = name;
-		this.parkLocation = new ParkLocation();
-		this.currentAction = Instruction.NOTHING;
-		this.actionTimeRemaining = 0.0;
-		this.currentSignalWord = "_";
-		this.allExerciseCompletionTime = Double.MAX_VALUE;
-		this.allExerciseCompleted = false;
+		this(new ParkState(), name);
 	}
 
 	public Owner(OwnerName name, List<Dog> dogs) {
-		this.name = name;
-		this.dogs = dogs;
-		this.parkLocation = new ParkLocation();
-		this.currentAction = Instruction.NOTHING;
-		this.actionTimeRemaining = 0.0;
-		this.currentSignalWord = "_";
-		this.allExerciseCompletionTime = Double.MAX_VALUE;
-		this.allExerciseCompleted = false;
+		this(new ParkState(), name);
+		setDogs(dogs);
+	}
+	
+	Owner(ParkState state, OwnerName name) {
+		this.state = state;
+		this.index = state.addOwner(this, name);
+	}
+	
+	Owner(ParkState state, int index) {
+		this.state = state;
+		this.index = index;
 	}
 
 	public enum OwnerName {
@@ -57,100 +49,161 @@ public class Owner implements Serializable {
 		TIMMY, TRENT, VICTOR, WALTER, WENDY
 	}
 	
+	ParkState getState() {
+		return state;
+	}
+	
+	int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Get the ID of the owner, which is the same in every snapshot, view and clone of the park
+	 *
+	 * @return  dense ID that ParkState.getOwner resolves
+	 *
+	 */
+	public int getID() {
+		return index;
+	}
+	
 	public void setName(OwnerName name) {
-		this.name = name;
+		state.ensureWritable();
+		state.ownerNames[index] = name;
 	}
 	
 	public OwnerName getNameAsEnum() {
-		return name;
+		return state.ownerNames[index];
 	}
 	
 	public String getNameAsString() {
+		OwnerName name = state.ownerNames[index];
 		return name.name().charAt(0) + name.name().substring(1).toLowerCase();
 	}
 	
 	public void setCurrentAction(Instruction newAction) {
-		if(actionTimeRemaining == 0.0) {
-			this.currentAction = newAction;
-			actionTimeRemaining = 5.0;			
+		state.ensureWritable();
+		if(state.getOwnerActionTicks(index) == 0) {
+			state.ownerActions[index] = newAction;
+			state.setOwnerActionTicks(index, state.toTicks(ACTION_TIME));
 		}
 	}
 	
 	public Double getActionTimeRemaining() {
-		return actionTimeRemaining;
+		return state.toSeconds(state.getOwnerActionTicks(index));
 	}
 	
 	public void decrementActionTimeRemaining() {
-		if(actionTimeRemaining >= 1.0)
-			actionTimeRemaining -= 1;
-		else
-			actionTimeRemaining = 0.0;
+		state.ensureWritable();
+		state.setOwnerActionTicks(index, Math.max(0, state.getOwnerActionTicks(index) - state.getTicksPerSecond()));
 	}
 	
 	public Instruction getCurrentAction() {
-		return currentAction;
+		return state.ownerActions[index];
 	}
 	
 	public void setCurrentSignal(String newSignalWord) {
-		this.currentSignalWord = newSignalWord;
+		state.ensureWritable();
+		state.ownerSignals[index] = newSignalWord;
 	}
 	
 	public String getCurrentSignal() {
-		return currentSignalWord;
+		return state.getOwnerSignal(index);
 	}
 	
 	public void setDogs(List<Dog> dogs) {
+		state.ensureWritable();
 		this.dogs = dogs;
+		
+		int[] dogIndices = new int[dogs.size()];
+		int numDogIndices = 0;
+		for(Dog dog : dogs)
+			if(dog.getState() == state)
+				dogIndices[numDogIndices++] = dog.getIndex();
+		state.ownerDogs[index] = numDogIndices == dogIndices.length ? dogIndices : Arrays.copyOf(dogIndices, numDogIndices);
 	}
 	
 	public List<Dog> getDogs() {
+		if(dogs == null && state.ownerDogs[index] != null) {
+			dogs = new ArrayList<>();
+			for(int dogIndex : state.ownerDogs[index])
+				dogs.add(state.getDog(dogIndex));
+		}
 		return dogs;
 	}
 	
 	public boolean hasDog(Dog dog) {
-		if(dogs.contains(dog))
-			return true;
-		for(Dog existingDog : dogs)
-			if(dog.getRealID().equals(existingDog.getRealID()) && dog.getRandomID().equals(existingDog.getRandomID()))
+		ParkState dogState = dog.getState();
+		if(dogState.isSamePark(state) && dog.getIndex() < state.numDogs)
+			return state.dogOwners[dog.getIndex()] == index;
+
+		// Dogs of another park are matched by their real and random IDs
+		for(int dogIndex : state.ownerDogs[index])
+			if(dogState.dogRealIDs[dog.getIndex()] == state.dogRealIDs[dogIndex] && dogState.dogRandomIDs[dog.getIndex()] == state.dogRandomIDs[dogIndex])
 				return true;
 		return false;
 	}
 		
 	public void setLocation(ParkLocation parkLocation) {
-		this.parkLocation = parkLocation;
+		state.ensureWritable();
+		state.ownerRows[index] = parkLocation.getRow();
+		state.ownerColumns[index] = parkLocation.getColumn();
+		state.markOwnerMoved(index);
 	}
 	
 	public void setLocation(Double row, Double column) {
-		this.parkLocation = new ParkLocation(row, column);
+		setLocation(new ParkLocation(row, column));
 	}
 	
 	public ParkLocation getLocation() {
-		return parkLocation;
+		return new ParkLocation(state.ownerRows[index], state.ownerColumns[index]);
 	}
 	
+	/**
+	 * Get the distance to another owner from the owner distances of the park
+	 *
+	 * @param otherOwner  owner to measure the distance to
+	 * @return            distance in meters
+	 *
+	 */
+	public Double getDistanceTo(Owner otherOwner) {
+		if(otherOwner.getState().isSamePark(state) && otherOwner.getIndex() < state.numOwners)
+			return state.getOwnerDistance(index, otherOwner.getIndex());
+		return ParkEngine.getDistance(state.ownerRows[index], state.ownerColumns[index], otherOwner.state.ownerRows[otherOwner.index], otherOwner.state.ownerColumns[otherOwner.index]);
+	}
+
+	public boolean isWithinSignalRangeOf(Owner otherOwner) {
+		if(otherOwner.getState().isSamePark(state) && otherOwner.getIndex() < state.numOwners)
+			return state.isWithinSignalRange(index, otherOwner.getIndex());
+		return getDistanceTo(otherOwner) <= 50.0 + dataError;
+	}
+
 	public String getLocationAsString() {
-		return parkLocation.toString();
+		return getLocation().toString();
 	}
 	
 	public boolean allExerciseCompleted() {
-		return allExerciseCompleted;
+		return state.isOwnerCompleted(index);
 	}
 	
 	public void setAllExerciseCompleted(boolean allExerciseCompleted) {
-		this.allExerciseCompleted = allExerciseCompleted;
+		state.ensureWritable();
+		state.ownerCompleted[index] = allExerciseCompleted;
 	}
 	
 	public Double getAllExerciseCompletionTime() {
-		return allExerciseCompletionTime;
+		return state.toSeconds(state.getOwnerCompletionTicks(index));
 	}
 	
 	public void setAllExerciseCompletionTime(double allExerciseCompletionTime) {
-		this.allExerciseCompletionTime = allExerciseCompletionTime;
+		state.ensureWritable();
+		state.ownerCompletionTicks[index] = state.toTicks(allExerciseCompletionTime);
 	}
 		
 	public void resetAction() {
-		this.currentAction = Instruction.NOTHING;
-		this.actionTimeRemaining = 0.0;
-		this.currentSignalWord = "_";
+		state.ensureWritable();
+		state.ownerActions[index] = Instruction.NOTHING;
+		state.setOwnerActionTicks(index, 0);
+		state.ownerSignals[index] = "_";
 	}
-}
\ No newline at end of file
+}
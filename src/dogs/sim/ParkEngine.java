@@ -0,0 +1,969 @@
+package dogs.sim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import dogs.sim.Directive.Instruction;
+
+
+public class ParkEngine {
+
+	private static double dataError = 1e-7;
+	private static final double EVENT_MARGIN = 1e-6;
+	private static final int MIN_PURSUIT_STEPS_PER_ROUND = 10;
+	private static final int PARALLEL_THRESHOLD = 64;
+
+	public enum Mode {
+		FIXED, EVENT, ADAPTIVE
+	}
+
+	// Phases that can be split across worker threads
+	private static final int MOVE_OWNERS = 0;
+	private static final int MOVE_DOGS = 1;
+	private static final int UPDATE_DOGS = 2;
+
+	// Dog states change through a nested enum, which would otherwise be initialized by the first sub-step changing one
+	static {
+		try {
+			MethodHandles.lookup().ensureInitialized(DogState.Transition.class);
+		} catch(IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private ParkState state;
+	private Mode mode;
+	private int inverseGranularity;
+	private double stepTime, maxSpeed;
+	private double stepScale, stepDuration;
+	private int ticksPerStep, stepTicks;
+	private long numSubSteps;
+	private ParkEngine referenceEngine;
+	private boolean referenceTracking, doubleBuffered;
+	private double maxLocationError, maxExerciseTimeError;
+	private SpatialGrid dogGrid, ownerGrid, ownerNeighbourhoodGrid;
+	private double[] previousOwnerRows, previousOwnerColumns;
+	private long[] previousOwnerSteps;
+	private long[] movedOwnerWords, movedDogWords, exercisedDogWords;
+	private IndexSet exercisedOwners;
+	private int numCompletedOwners;
+	private ScoreBoard scoreBoard;
+	private ProximityKernel proximityKernel;
+	private int[] gridCandidates;
+	private ForkJoinPool pool;
+	private ThreadLocal<int[]> workerGridCandidates;
+	private TimingWheel waitingTimers, decisionTimers;
+	private IndexSet timedDogs, decidingOwners;
+	private long[] waitingStartSteps, waitingStartTicks;
+
+	/**
+	 * Engine advancing the park state by sub-steps
+	 *
+	 * With more than one thread, the movement and obstacle phases are split across a
+	 * fork/join pool. Every dog only writes its own slots and reads owner positions
+	 * from the previous or current buffer as the sequential owner order would, so the
+	 * results are identical for any number of threads.
+	 *
+	 * @param state               park state to advance
+	 * @param inverseGranularity  number of sub-steps per round
+	 * @param numThreads          number of worker threads (1 for sequential)
+	 *
+	 */
+	public ParkEngine(ParkState state, int inverseGranularity, int numThreads) {
+		this(state, Mode.FIXED, inverseGranularity, numThreads);
+	}
+
+	/**
+	 * Engine advancing the park state by sub-steps or from event to event
+	 *
+	 * In event mode, runs of sub-steps in which every entity keeps moving in a straight
+	 * line without changing state are skipped in closed form, and only the sub-steps at
+	 * which something can happen are simulated. In adaptive mode, the same runs are
+	 * simulated as one longer sub-step instead, and the sub-step shrinks back to the
+	 * granularity as entities get close to a threshold.
+	 *
+	 * @param state               park state to advance
+	 * @param mode                fixed sub-steps or event-driven
+	 * @param inverseGranularity  number of sub-steps per round
+	 * @param numThreads          number of worker threads (1 for sequential)
+	 *
+	 */
+	public ParkEngine(ParkState state, Mode mode, int inverseGranularity, int numThreads) {
+		this.state = state;
+		this.mode = mode;
+		this.inverseGranularity = inverseGranularity;
+		this.stepTime = 1.0 / inverseGranularity;
+		if(state.getTicksPerSecond() % inverseGranularity != 0)
+			throw new IllegalArgumentException("Granularity " + inverseGranularity + " does not divide " + state.getTicksPerSecond() + " ticks per second");
+		this.ticksPerStep = state.getTicksPerSecond() / inverseGranularity;
+		this.previousOwnerRows = new double[state.numOwners];
+		this.previousOwnerColumns = new double[state.numOwners];
+		this.previousOwnerSteps = new long[state.numOwners];
+		this.movedOwnerWords = new long[IndexSet.getNumWords(state.numOwners)];
+		this.movedDogWords = new long[IndexSet.getNumWords(state.numDogs)];
+		this.exercisedDogWords = new long[IndexSet.getNumWords(state.numDogs)];
+		this.exercisedOwners = new IndexSet(state.numOwners);
+		for(int ownerIndex = 0; ownerIndex < state.numOwners; ownerIndex++) {
+			if(state.ownerCompleted[ownerIndex])
+				numCompletedOwners++;
+			else
+				exercisedOwners.add(ownerIndex);
+		}
+		this.gridCandidates = new int[Math.max(state.numDogs, state.numOwners)];
+		this.waitingTimers = new TimingWheel(state.numDogs);
+		this.decisionTimers = new TimingWheel(state.numOwners);
+		this.timedDogs = new IndexSet(state.numDogs);
+		this.decidingOwners = new IndexSet(state.numOwners);
+		this.waitingStartSteps = new long[state.numDogs];
+		this.waitingStartTicks = new long[state.numDogs];
+		if(numThreads > 1) {
+			this.pool = new ForkJoinPool(numThreads);
+			this.workerGridCandidates = ThreadLocal.withInitial(() -> new int[gridCandidates.length]);
+		}
+		this.maxSpeed = 1.0;
+		for(int dogIndex = 0; dogIndex < state.numDogs; dogIndex++)
+			maxSpeed = Math.max(maxSpeed, Math.max(state.dogRunningSpeeds[dogIndex], state.dogWalkingSpeeds[dogIndex]));
+		buildSpatialGrids();
+	}
+
+	/**
+	 * Advance the park by at least one sub-step without crossing a round boundary
+	 *
+	 * @param firstStep  number of the first sub-step to run
+	 * @param maxSteps   number of sub-steps left in the current round
+	 * @return           number of sub-steps advanced
+	 *
+	 */
+	public int advance(int firstStep, int maxSteps) {
+		state.ensureWritable();
+		if(referenceTracking && maxSteps == inverseGranularity && (mode == Mode.ADAPTIVE || doubleBuffered)) {
+			referenceEngine = new ParkEngine(state.snapshot(), Mode.FIXED, inverseGranularity, 1);
+			referenceEngine.setProximityKernel(proximityKernel);
+		}
+
+		int numSteps;
+		if(mode == Mode.ADAPTIVE)
+			numSteps = advanceAdaptively(firstStep, maxSteps);
+		else {
+			int quietSteps = 0;
+			if(mode == Mode.EVENT) {
+				updateWaitingTimers(firstStep);
+				quietSteps = Math.min(getQuietSteps(firstStep, maxSteps), maxSteps - 1);
+			}
+			if(quietSteps > 0) {
+				skipQuietSteps(quietSteps);
+				markMovingEntities();
+				commitLocations();
+			}
+			step(firstStep + quietSteps);
+			numSteps = quietSteps + 1;
+		}
+
+		if(referenceEngine != null && numSteps == maxSteps) {
+			for(int currentStep = firstStep + maxSteps - inverseGranularity; currentStep <= firstStep + maxSteps - 1; currentStep++)
+				referenceEngine.step(currentStep);
+			updateReferenceError();
+			referenceEngine = null;
+		}
+		if(numSteps == maxSteps)
+			synchronizeWaitingTimes(firstStep + numSteps - 1);
+		return numSteps;
+	}
+
+	public void step(int currentStep) {
+		state.ensureWritable();
+		step(currentStep, 1);
+	}
+
+	/**
+	 * Track the local error of an adaptive or double-buffered engine against fixed steps
+	 *
+	 * Every round is replayed from the same starting state with fixed sub-steps in the
+	 * legacy order, and the largest differences in locations and exercise times at the
+	 * end of a round are kept. Each round starts over from this engine's own state, so
+	 * the error of one round never carries over into the next.
+	 *
+	 * @param referenceTracking  whether to run the reference
+	 *
+	 */
+	public void setReferenceTracking(boolean referenceTracking) {
+		this.referenceTracking = referenceTracking;
+	}
+
+	/**
+	 * Make every sub-step read the locations the park had before it
+	 *
+	 * The movement phases write every dog and owner only from its own slot, and the
+	 * only location read across entities is that of the owner a dog heads for. In the
+	 * legacy order owners and their dogs are moved owner by owner, so a dog sees the
+	 * new location of owners up to its own and the previous one of the others. With
+	 * double buffering, moving owners write their previous location to a buffer stamped
+	 * with the sub-step, which freezes it for the rest of the sub-step, and every dog
+	 * reads the buffer of an owner stamped with the current sub-step. Advancing the
+	 * sub-step count swaps all buffers at once.
+	 *
+	 * The results no longer depend on owner order. They differ from the legacy order
+	 * only for dogs heading for a moving owner with an index up to their own owner's,
+	 * which trail it by one sub-step of the owner's movement.
+	 *
+	 * @param doubleBuffered  whether dogs read owner locations from before the sub-step
+	 *
+	 */
+	public void setDoubleBuffered(boolean doubleBuffered) {
+		this.doubleBuffered = doubleBuffered;
+	}
+
+	/**
+	 * Keep a score board up to date as dogs exercise and owners complete
+	 *
+	 * @param scoreBoard  score board of the park state
+	 *
+	 */
+	public void setScoreBoard(ScoreBoard scoreBoard) {
+		this.scoreBoard = scoreBoard;
+	}
+
+	/**
+	 * Narrow down the candidates of the proximity checks before their exact test
+	 *
+	 * @param proximityKernel  kernel filtering the grid candidates, or null to test all of them
+	 *
+	 */
+	public void setProximityKernel(ProximityKernel proximityKernel) {
+		this.proximityKernel = proximityKernel;
+	}
+
+	public ProximityKernel getProximityKernel() {
+		return proximityKernel;
+	}
+
+	public long getNumSubSteps() {
+		return numSubSteps;
+	}
+
+	public double getMaxLocationError() {
+		return maxLocationError;
+	}
+
+	public double getMaxExerciseTimeError() {
+		return maxExerciseTimeError;
+	}
+
+	private int advanceAdaptively(int firstStep, int maxSteps) {
+		updateWaitingTimers(firstStep);
+		int stride = Math.max(1, getQuietSteps(firstStep, maxSteps));
+		step(firstStep + stride - 1, stride);
+		return stride;
+	}
+
+	private void updateReferenceError() {
+		ParkState reference = referenceEngine.state;
+		for(int ownerIndex = 0; ownerIndex < state.numOwners; ownerIndex++)
+			maxLocationError = Math.max(maxLocationError, getDistance(state.ownerRows[ownerIndex], state.ownerColumns[ownerIndex], reference.ownerRows[ownerIndex], reference.ownerColumns[ownerIndex]));
+		for(int dogIndex = 0; dogIndex < state.numDogs; dogIndex++) {
+			maxLocationError = Math.max(maxLocationError, getDistance(state.dogRows[dogIndex], state.dogColumns[dogIndex], reference.dogRows[dogIndex], reference.dogColumns[dogIndex]));
+			maxExerciseTimeError = Math.max(maxExerciseTimeError, state.toSeconds(Math.abs(state.dogExerciseTicks[dogIndex] - reference.dogExerciseTicks[dogIndex])));
+		}
+	}
+
+	private void step(int currentStep, int stride) {
+		stepScale = (double) inverseGranularity / stride;
+		stepDuration = stride * stepTime;
+		stepTicks = stride * ticksPerStep;
+		numSubSteps++;
+		updateWaitingTimers(currentStep - stride + 1);
+		runPhase(MOVE_OWNERS, state.numOwners);
+		runPhase(MOVE_DOGS, state.numDogs);
+		expireWaitingTimers(currentStep);
+		commitLocations();
+		runPhase(UPDATE_DOGS, state.numDogs);
+		updateExerciseCompletion(currentStep);
+	}
+
+	/**
+	 * Schedule the next decision of an owner
+	 *
+	 * @param ownerIndex  index of the owner deciding
+	 * @param step        number of the sub-step after which the owner decides
+	 *
+	 */
+	public void scheduleDecision(int ownerIndex, long step) {
+		decisionTimers.schedule(ownerIndex, step);
+	}
+
+	/**
+	 * Get the owners whose action has run out and who decide before the next sub-step
+	 *
+	 * @param step  number of the last sub-step advanced
+	 * @return      set of deciding owners, valid until the next call
+	 *
+	 */
+	public IndexSet getDecidingOwners(long step) {
+		decidingOwners.clear();
+		for(int ownerIndex = decisionTimers.poll(step); ownerIndex != ParkState.NONE; ownerIndex = decisionTimers.poll(step))
+			decidingOwners.add(ownerIndex);
+		return decidingOwners;
+	}
+
+	public boolean allExerciseCompleted() {
+		return numCompletedOwners == state.numOwners;
+	}
+
+	/**
+	 * Take an owner that left the park and its dogs out of the simulation
+	 *
+	 * @param ownerIndex  index of the owner that left
+	 *
+	 */
+	public void removeOwner(int ownerIndex) {
+		state.setOwnerExited(ownerIndex);
+		ownerGrid.remove(ownerIndex);
+		ownerNeighbourhoodGrid.remove(ownerIndex);
+		for(int dogIndex : state.ownerDogs[ownerIndex])
+			dogGrid.remove(dogIndex);
+	}
+
+	/**
+	 * Engine continuing a fork of the park from the end of a round
+	 *
+	 * The fork runs with the same settings, decisions and counters, and builds its
+	 * own grids and timers from the forked state, so the two engines share nothing
+	 * they write and can run on different threads. Score boards are not carried over.
+	 *
+	 * @param forkedState  fork of the state of this engine
+	 * @return             engine advancing the forked state
+	 *
+	 */
+	public ParkEngine fork(ParkState forkedState) {
+		ParkEngine fork = new ParkEngine(forkedState, mode, inverseGranularity, pool == null ? 1 : pool.getParallelism());
+		fork.referenceTracking = referenceTracking;
+		fork.doubleBuffered = doubleBuffered;
+		fork.proximityKernel = proximityKernel;
+		fork.numSubSteps = numSubSteps;
+		fork.maxLocationError = maxLocationError;
+		fork.maxExerciseTimeError = maxExerciseTimeError;
+		for(int ownerIndex = 0; ownerIndex < state.numOwners; ownerIndex++) {
+			fork.decisionTimers.cancel(ownerIndex);
+			if(decisionTimers.isScheduled(ownerIndex))
+				fork.decisionTimers.schedule(ownerIndex, decisionTimers.getTick(ownerIndex));
+		}
+		return fork;
+	}
+
+	/**
+	 * Write the decisions scheduled and the counters of the engine at the end of a round
+	 *
+	 * Waiting timers and the spatial grids are rebuilt from the park state, and the
+	 * waiting times in the park state are up to date at the end of every round.
+	 *
+	 * @param out  output to write to
+	 *
+	 */
+	public void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeLong(numSubSteps);
+		out.writeDouble(maxLocationError);
+		out.writeDouble(maxExerciseTimeError);
+		for(int ownerIndex = 0; ownerIndex < state.numOwners; ownerIndex++)
+			out.writeLong(decisionTimers.getTick(ownerIndex));
+	}
+
+	/**
+	 * Restore the engine of a park whose state was restored before the engine was created
+	 *
+	 * @param in  input written by writeCheckpoint
+	 *
+	 */
+	public void readCheckpoint(DataInput in) throws IOException {
+		numSubSteps = in.readLong();
+		maxLocationError = in.readDouble();
+		maxExerciseTimeError = in.readDouble();
+		for(int ownerIndex = 0; ownerIndex < state.numOwners; ownerIndex++) {
+			long step = in.readLong();
+			if(step == Long.MAX_VALUE)
+				decisionTimers.cancel(ownerIndex);
+			else
+				decisionTimers.schedule(ownerIndex, step);
+		}
+	}
+
+	public void shutdown() {
+		if(pool != null)
+			pool.shutdown();
+	}
+
+	// Phases visit only the active sets, split into ranges of 64-bit words so that workers never share a word
+	private void runPhase(int phase, int numEntities) {
+		if(pool == null || numEntities <= PARALLEL_THRESHOLD)
+			runPhase(phase, 0, IndexSet.getNumWords(numEntities), gridCandidates);
+		else
+			pool.invoke(new PhaseAction(phase, 0, IndexSet.getNumWords(numEntities)));
+	}
+
+	private void runPhase(int phase, int fromWord, int toWord, int[] candidates) {
+		switch(phase) {
+		case MOVE_OWNERS:
+			moveOwners(fromWord, toWord);
+			break;
+		case MOVE_DOGS:
+			moveDogs(fromWord, toWord);
+			break;
+		case UPDATE_DOGS:
+			updateDogsAfterMovement(fromWord, toWord, candidates);
+			break;
+		}
+	}
+
+	private class PhaseAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private int phase, fromWord, toWord;
+
+		PhaseAction(int phase, int fromWord, int toWord) {
+			this.phase = phase;
+			this.fromWord = fromWord;
+			this.toWord = toWord;
+		}
+
+		@Override
+		protected void compute() {
+			if((toWord - fromWord) * 64 <= PARALLEL_THRESHOLD) {
+				runPhase(phase, fromWord, toWord, workerGridCandidates.get());
+				return;
+			}
+			int middleWord = (fromWord + toWord) >>> 1;
+			invokeAll(new PhaseAction(phase, fromWord, middleWord), new PhaseAction(phase, middleWord, toWord));
+		}
+	}
+
+	private void buildSpatialGrids() {
+		dogGrid = new SpatialGrid(1.0, state.numDogs);
+		ownerGrid = new SpatialGrid(1.0, state.numOwners);
+		ownerNeighbourhoodGrid = new SpatialGrid(10.0, state.numOwners);
+		for(int ownerIndex = 0; ownerIndex < state.numOwners; ownerIndex++) {
+			if(state.ownerExited[ownerIndex])
+				continue;
+			ownerGrid.move(ownerIndex, state.ownerRows[ownerIndex], state.ownerColumns[ownerIndex]);
+			ownerNeighbourhoodGrid.move(ownerIndex, state.ownerRows[ownerIndex], state.ownerColumns[ownerIndex]);
+		}
+		for(int dogIndex = 0; dogIndex < state.numDogs; dogIndex++)
+			if(!state.ownerExited[state.dogOwners[dogIndex]])
+				dogGrid.move(dogIndex, state.dogRows[dogIndex], state.dogColumns[dogIndex]);
+	}
+
+	private void markMovingEntities() {
+		for(int word = 0; word < movedOwnerWords.length; word++)
+			movedOwnerWords[word] |= state.movingOwners.getWord(word);
+		for(int word = 0; word < movedDogWords.length; word++) {
+			movedDogWords[word] |= state.movingDogs.getWord(word);
+			exercisedDogWords[word] |= state.movingDogs.getWord(word);
+		}
+	}
+
+	private void commitLocations() {
+		for(int word = 0; word < movedOwnerWords.length; word++) {
+			for(long ownerBits = movedOwnerWords[word]; ownerBits != 0; ownerBits &= ownerBits - 1) {
+				int ownerIndex = (word << 6) + Long.numberOfTrailingZeros(ownerBits);
+				state.markOwnerMoved(ownerIndex);
+				ownerGrid.move(ownerIndex, state.ownerRows[ownerIndex], state.ownerColumns[ownerIndex]);
+				ownerNeighbourhoodGrid.move(ownerIndex, state.ownerRows[ownerIndex], state.ownerColumns[ownerIndex]);
+			}
+			movedOwnerWords[word] = 0;
+		}
+		for(int word = 0; word < movedDogWords.length; word++) {
+			for(long dogBits = movedDogWords[word]; dogBits != 0; dogBits &= dogBits - 1) {
+				int dogIndex = (word << 6) + Long.numberOfTrailingZeros(dogBits);
+				dogGrid.move(dogIndex, state.dogRows[dogIndex], state.dogColumns[dogIndex]);
+			}
+			movedDogWords[word] = 0;
+		}
+	}
+
+	private void moveOwners(int fromWord, int toWord) {
+		for(int word = fromWord; word < toWord; word++) {
+			long ownerBits = state.movingOwners.getWord(word);
+			movedOwnerWords[word] |= ownerBits;
+			for(; ownerBits != 0; ownerBits &= ownerBits - 1)
+				moveOwner((word << 6) + Long.numberOfTrailingZeros(ownerBits));
+		}
+	}
+
+	private void moveOwner(int ownerIndex) {
+		double ownerOldRow = state.ownerRows[ownerIndex];
+		double ownerOldColumn = state.ownerColumns[ownerIndex];
+		previousOwnerRows[ownerIndex] = ownerOldRow;
+		previousOwnerColumns[ownerIndex] = ownerOldColumn;
+		previousOwnerSteps[ownerIndex] = numSubSteps;
+
+		double ownerNewRow = state.ownerTargetRows[ownerIndex];
+		double ownerNewColumn = state.ownerTargetColumns[ownerIndex];
+		if(withinRange(ownerOldRow, ownerOldColumn, ownerNewRow, ownerNewColumn, stepDuration)) {
+			state.ownerRows[ownerIndex] = ownerNewRow;
+			state.ownerColumns[ownerIndex] = ownerNewColumn;
+			state.setOwnerMoving(ownerIndex, false);
+		}
+		else {
+			double distance = getDistance(ownerOldRow, ownerOldColumn, ownerNewRow, ownerNewColumn);
+			double ownerIntermediateRow = distance == 0 ? ownerOldRow : ownerOldRow + (ownerNewRow - ownerOldRow) / (distance * stepScale);
+			double ownerIntermediateColumn = distance == 0 ? ownerOldColumn : ownerOldColumn + (ownerNewColumn - ownerOldColumn) / (distance * stepScale);
+
+			state.ownerRows[ownerIndex] = ParkState.clampToPark(ownerIntermediateRow);
+			state.ownerColumns[ownerIndex] = ParkState.clampToPark(ownerIntermediateColumn);
+		}
+	}
+
+	private void moveDogs(int fromWord, int toWord) {
+		for(int word = fromWord; word < toWord; word++) {
+			long movingBits = state.movingDogs.getWord(word);
+			movedDogWords[word] |= movingBits;
+			exercisedDogWords[word] |= movingBits;
+			for(long dogBits = movingBits; dogBits != 0; dogBits &= dogBits - 1)
+				moveDog((word << 6) + Long.numberOfTrailingZeros(dogBits));
+		}
+	}
+
+	private void moveDog(int dogIndex) {
+		int ownerIndex = state.dogOwners[dogIndex];
+		int ballIndex = state.dogBalls[dogIndex];
+		double dogOldRow = state.dogRows[dogIndex];
+		double dogOldColumn = state.dogColumns[dogIndex];
+
+		if(state.dogMoving[dogIndex]) {
+			double speed = state.dogWalkingSpeeds[dogIndex];
+			double dogNewRow = state.dogTargetRows[dogIndex];
+			double dogNewColumn = state.dogTargetColumns[dogIndex];
+			if(withinRange(dogOldRow, dogOldColumn, dogNewRow, dogNewColumn, speed / stepScale)) {
+				setDogAndBallLocation(dogIndex, ballIndex, dogNewRow, dogNewColumn);
+				state.setDogWaitingForPerson(dogIndex, ownerIndex);
+				state.setDogMoving(dogIndex, false);
+			}
+			else {
+				double distance = getDistance(dogOldRow, dogOldColumn, dogNewRow, dogNewColumn);
+				double dogIntermediateRow = distance == 0 ? dogOldRow : dogOldRow + (dogNewRow - dogOldRow) * speed / (distance * stepScale);
+				double dogIntermediateColumn = distance == 0 ? dogOldColumn : dogOldColumn + (dogNewColumn - dogOldColumn) * speed / (distance * stepScale);
+
+				setDogAndBallLocation(dogIndex, ballIndex, ParkState.clampToPark(dogIntermediateRow), ParkState.clampToPark(dogIntermediateColumn));
+			}
+			return;
+		}
+
+		byte dogState = state.dogStates[dogIndex];
+		switch(dogState) {
+		case DogState.CHASING_CODE:
+		case DogState.TROTTING_CODE: {
+			boolean isRunning = dogState == DogState.CHASING_CODE;
+			double speed = isRunning ? state.dogRunningSpeeds[dogIndex] : state.dogWalkingSpeeds[dogIndex];
+			double dogNewRow = state.ballRows[ballIndex];
+			double dogNewColumn = state.ballColumns[ballIndex];
+			if(withinRange(dogOldRow, dogOldColumn, dogNewRow, dogNewColumn, speed / stepScale)) {
+				state.dogRows[dogIndex] = dogNewRow;
+				state.dogColumns[dogIndex] = dogNewColumn;
+				state.setDogHasBall(dogIndex, true);
+				if(isRunning)
+					state.decreaseDogExerciseTicks(dogIndex, stepTicks);
+				state.setDogStationary(dogIndex);
+			}
+			else {
+				double distance = getDistance(dogOldRow, dogOldColumn, dogNewRow, dogNewColumn);
+				double dogIntermediateRow = distance == 0 ? dogOldRow : dogOldRow + (dogNewRow - dogOldRow) * speed / (distance * stepScale);
+				double dogIntermediateColumn = distance == 0 ? dogOldColumn : dogOldColumn + (dogNewColumn - dogOldColumn) * speed / (distance * stepScale);
+
+				state.dogRows[dogIndex] = ParkState.clampToPark(dogIntermediateRow);
+				state.dogColumns[dogIndex] = ParkState.clampToPark(dogIntermediateColumn);
+				if(isRunning)
+					state.decreaseDogExerciseTicks(dogIndex, stepTicks);
+			}
+			break;
+		}
+		case DogState.RETURNING_CODE: {
+			double speed = state.dogWalkingSpeeds[dogIndex];
+			int ownerHeadingFor = state.dogOwnersHeadingFor[dogIndex];
+
+			// Owners are moved in order before their own dogs, so only owners up to this dog's owner have moved yet
+			boolean ownerMovedLater = (doubleBuffered || ownerHeadingFor > ownerIndex) && previousOwnerSteps[ownerHeadingFor] == numSubSteps;
+			double ownerNewRow = ownerMovedLater ? previousOwnerRows[ownerHeadingFor] : state.ownerRows[ownerHeadingFor];
+			double ownerNewColumn = ownerMovedLater ? previousOwnerColumns[ownerHeadingFor] : state.ownerColumns[ownerHeadingFor];
+			double fullDistance = getDistance(dogOldRow, dogOldColumn, ownerNewRow, ownerNewColumn);
+			double dogNewRow = ParkState.clampToPark(fullDistance == 0 ? dogOldRow : dogOldRow + (ownerNewRow - dogOldRow) * (fullDistance - 1) / fullDistance);
+			double dogNewColumn = ParkState.clampToPark(fullDistance == 0 ? dogOldColumn : dogOldColumn + (ownerNewColumn - dogOldColumn) * (fullDistance - 1) / fullDistance);
+
+			if(withinRange(dogOldRow, dogOldColumn, dogNewRow, dogNewColumn, speed / stepScale)) {
+				setDogAndBallLocation(dogIndex, ballIndex, dogNewRow, dogNewColumn);
+				state.setDogWaitingForPerson(dogIndex, ownerHeadingFor);
+			}
+			else {
+				double requiredDistance = getDistance(dogOldRow, dogOldColumn, dogNewRow, dogNewColumn);
+				double dogIntermediateRow = requiredDistance == 0 ? dogOldRow : dogOldRow + (dogNewRow - dogOldRow) * speed / (requiredDistance * stepScale);
+				double dogIntermediateColumn = requiredDistance == 0 ? dogOldColumn : dogOldColumn + (dogNewColumn - dogOldColumn) * speed / (requiredDistance * stepScale);
+
+				setDogAndBallLocation(dogIndex, ballIndex, ParkState.clampToPark(dogIntermediateRow), ParkState.clampToPark(dogIntermediateColumn));
+			}
+			break;
+		}
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Bring the waiting timers in line with the dogs waiting for another owner
+	 *
+	 * Dogs that started waiting since the last sub-step get a deadline for the sub-step
+	 * at which their waiting time runs out, and dogs that stopped waiting lose theirs.
+	 * Owner actions only change between rounds, so waiting dogs are checked against
+	 * an owner that moves once at the start of every round instead of every sub-step.
+	 *
+	 * @param firstStep  number of the first sub-step about to run
+	 *
+	 */
+	private void updateWaitingTimers(int firstStep) {
+		boolean roundStart = (firstStep - 1) % inverseGranularity == 0;
+		for(int word = 0; word < IndexSet.getNumWords(state.numDogs); word++) {
+			long waitingBits = state.waitingDogs.getWord(word);
+			for(long dogBits = waitingBits ^ timedDogs.getWord(word); dogBits != 0; dogBits &= dogBits - 1) {
+				int dogIndex = (word << 6) + Long.numberOfTrailingZeros(dogBits);
+				if((waitingBits & (1L << dogIndex)) != 0) {
+					waitingStartSteps[dogIndex] = firstStep;
+					waitingStartTicks[dogIndex] = state.dogWaitingTicks[dogIndex];
+					waitingTimers.schedule(dogIndex, firstStep + (state.dogWaitingTicks[dogIndex] + ticksPerStep - 1) / ticksPerStep);
+					timedDogs.add(dogIndex);
+				}
+				else {
+					waitingTimers.cancel(dogIndex);
+					timedDogs.remove(dogIndex);
+				}
+			}
+
+			for(long dogBits = waitingBits; dogBits != 0; dogBits &= dogBits - 1) {
+				int dogIndex = (word << 6) + Long.numberOfTrailingZeros(dogBits);
+				if((roundStart || waitingStartSteps[dogIndex] == firstStep) && state.ownerActions[state.dogOwnersWaitingFor[dogIndex]] == Instruction.MOVE)
+					waitingTimers.schedule(dogIndex, firstStep);
+			}
+		}
+	}
+
+	// Dogs whose waiting time ran out head back to their owner without moving in this sub-step
+	private void expireWaitingTimers(int currentStep) {
+		for(int dogIndex = waitingTimers.poll(currentStep); dogIndex != ParkState.NONE; dogIndex = waitingTimers.poll(currentStep)) {
+			timedDogs.remove(dogIndex);
+			state.setDogHeadingForPerson(dogIndex, state.dogOwners[dogIndex]);
+		}
+	}
+
+	private void synchronizeWaitingTimes(int lastStep) {
+		for(int dogIndex = timedDogs.nextIndex(0); dogIndex != ParkState.NONE; dogIndex = timedDogs.nextIndex(dogIndex + 1))
+			state.dogWaitingTicks[dogIndex] = Math.max(0, waitingStartTicks[dogIndex] - (lastStep - waitingStartSteps[dogIndex] + 1) * ticksPerStep);
+	}
+
+	private int getQuietSteps(int firstStep, int maxSteps) {
+		int quietSteps = (int) Math.min(maxSteps, waitingTimers.getNextTick() - firstStep);
+		for(int ownerIndex = state.movingOwners.nextIndex(0); ownerIndex != ParkState.NONE && quietSteps > 0; ownerIndex = state.movingOwners.nextIndex(ownerIndex + 1)) {
+			double distance = getDistance(state.ownerRows[ownerIndex], state.ownerColumns[ownerIndex], state.ownerTargetRows[ownerIndex], state.ownerTargetColumns[ownerIndex]);
+			quietSteps = Math.min(quietSteps, getStepsBeforeArrival(distance, stepTime));
+		}
+
+		for(int dogIndex = state.movingDogs.nextIndex(0); dogIndex != ParkState.NONE && quietSteps > 0; dogIndex = state.movingDogs.nextIndex(dogIndex + 1)) {
+			int ownerIndex = state.dogOwners[dogIndex];
+			byte dogState = state.dogStates[dogIndex];
+			double dogRow = state.dogRows[dogIndex];
+			double dogColumn = state.dogColumns[dogIndex];
+
+			if(dogState == DogState.FETCHED_CODE)
+				return 0;
+			if(dogState == DogState.CHASING_CODE || dogState == DogState.TROTTING_CODE || dogState == DogState.PAUSED_CODE)
+				quietSteps = Math.min(quietSteps, getStepsBeforeObstacleChange(dogIndex, maxSteps));
+
+			if(state.dogMoving[dogIndex]) {
+				double distance = getDistance(dogRow, dogColumn, state.dogTargetRows[dogIndex], state.dogTargetColumns[dogIndex]);
+				quietSteps = Math.min(quietSteps, getStepsBeforeArrival(distance, state.dogWalkingSpeeds[dogIndex] / inverseGranularity));
+				continue;
+			}
+
+			switch(dogState) {
+			case DogState.CHASING_CODE:
+			case DogState.TROTTING_CODE: {
+				boolean isRunning = dogState == DogState.CHASING_CODE;
+				double speed = isRunning ? state.dogRunningSpeeds[dogIndex] : state.dogWalkingSpeeds[dogIndex];
+				int ballIndex = state.dogBalls[dogIndex];
+				double distance = getDistance(dogRow, dogColumn, state.ballRows[ballIndex], state.ballColumns[ballIndex]);
+				quietSteps = Math.min(quietSteps, getStepsBeforeArrival(distance, speed / inverseGranularity));
+				if(isRunning && !state.ownerCompleted[ownerIndex] && state.dogExerciseTicks[dogIndex] > 0)
+					quietSteps = (int) Math.min(quietSteps, (state.dogExerciseTicks[dogIndex] - 1) / ticksPerStep);
+				break;
+			}
+			case DogState.RETURNING_CODE: {
+				int ownerHeadingFor = state.dogOwnersHeadingFor[dogIndex];
+				double speed = state.dogWalkingSpeeds[dogIndex];
+				double fullDistance = getDistance(dogRow, dogColumn, state.ownerRows[ownerHeadingFor], state.ownerColumns[ownerHeadingFor]);
+
+				// A moving owner can close in on the dog by one step per sub-step on top of the dog's own steps
+				if(state.ownerMoving[ownerHeadingFor]) {
+					quietSteps = Math.min(quietSteps, (int) Math.floor((fullDistance - 1 - dataError - EVENT_MARGIN) * inverseGranularity / (speed + 1)));
+					// Longer sub-steps cut the corners of the pursuit, so the adaptive engine keeps them short
+					if(mode == Mode.ADAPTIVE)
+						quietSteps = Math.min(quietSteps, Math.max(1, inverseGranularity / MIN_PURSUIT_STEPS_PER_ROUND));
+				}
+				else
+					quietSteps = Math.min(quietSteps, getStepsBeforeArrival(fullDistance - 1, speed / inverseGranularity));
+				break;
+			}
+			default:
+				break;
+			}
+		}
+		return Math.max(0, quietSteps);
+	}
+
+	private int getStepsBeforeArrival(double distance, double stepLength) {
+		return (int) Math.floor((distance - dataError - EVENT_MARGIN) / stepLength);
+	}
+
+	private int getStepsBeforeObstacleChange(int dogIndex, int maxSteps) {
+		double dogRow = state.dogRows[dogIndex];
+		double dogColumn = state.dogColumns[dogIndex];
+		double dogSpeed = getDogSpeed(dogIndex);
+		double searchRange = 1.0 + (dogSpeed + maxSpeed) * maxSteps / inverseGranularity + EVENT_MARGIN;
+		double clearanceTime = Double.MAX_VALUE;
+		boolean obstacleFound = false;
+
+		int numCandidates = dogGrid.getCandidates(dogRow, dogColumn, searchRange, gridCandidates);
+		for(int i = 0; i < numCandidates; i++) {
+			int otherDog = gridCandidates[i];
+			if(otherDog == dogIndex)
+				continue;
+			double distance = getDistance(dogRow, dogColumn, state.dogRows[otherDog], state.dogColumns[otherDog]);
+			obstacleFound |= distance <= 1.0 + dataError;
+			clearanceTime = Math.min(clearanceTime, getClearanceTime(distance, dogSpeed + getDogSpeed(otherDog)));
+		}
+		numCandidates = ownerGrid.getCandidates(dogRow, dogColumn, searchRange, gridCandidates);
+		for(int i = 0; i < numCandidates; i++) {
+			int anyOwner = gridCandidates[i];
+			double distance = getDistance(dogRow, dogColumn, state.ownerRows[anyOwner], state.ownerColumns[anyOwner]);
+			obstacleFound |= distance <= 1.0 + dataError;
+			clearanceTime = Math.min(clearanceTime, getClearanceTime(distance, dogSpeed + (state.ownerMoving[anyOwner] ? 1.0 : 0.0)));
+		}
+
+		// The dog must already be in the speed state the obstacle check would give it
+		if(state.dogStates[dogIndex] != (obstacleFound ? DogState.TROTTING_CODE : DogState.CHASING_CODE))
+			return 0;
+		if(clearanceTime >= maxSteps * stepTime)
+			return maxSteps;
+		return (int) Math.floor(clearanceTime * inverseGranularity);
+	}
+
+	private double getClearanceTime(double distance, double closingSpeed) {
+		double clearance = Math.abs(distance - 1.0) - dataError - EVENT_MARGIN;
+		if(clearance <= 0)
+			return 0;
+		return closingSpeed == 0 ? Double.MAX_VALUE : clearance / closingSpeed;
+	}
+
+	private double getDogSpeed(int dogIndex) {
+		if(state.dogMoving[dogIndex])
+			return state.dogWalkingSpeeds[dogIndex];
+		switch(state.dogStates[dogIndex]) {
+		case DogState.CHASING_CODE:
+			return state.dogRunningSpeeds[dogIndex];
+		case DogState.TROTTING_CODE:
+		case DogState.RETURNING_CODE:
+			return state.dogWalkingSpeeds[dogIndex];
+		default:
+			return 0;
+		}
+	}
+
+	private void skipQuietSteps(int quietSteps) {
+		for(int dogIndex = state.movingDogs.nextIndex(0); dogIndex != ParkState.NONE; dogIndex = state.movingDogs.nextIndex(dogIndex + 1)) {
+			int ownerIndex = state.dogOwners[dogIndex];
+			int ballIndex = state.dogBalls[dogIndex];
+			double dogOldRow = state.dogRows[dogIndex];
+			double dogOldColumn = state.dogColumns[dogIndex];
+
+			if(state.dogMoving[dogIndex]) {
+				double dogNewRow = state.dogTargetRows[dogIndex];
+				double dogNewColumn = state.dogTargetColumns[dogIndex];
+				double fraction = state.dogWalkingSpeeds[dogIndex] * quietSteps / (getDistance(dogOldRow, dogOldColumn, dogNewRow, dogNewColumn) * inverseGranularity);
+				setDogAndBallLocation(dogIndex, ballIndex, ParkState.clampToPark(dogOldRow + (dogNewRow - dogOldRow) * fraction), ParkState.clampToPark(dogOldColumn + (dogNewColumn - dogOldColumn) * fraction));
+				continue;
+			}
+
+			byte dogState = state.dogStates[dogIndex];
+			switch(dogState) {
+			case DogState.CHASING_CODE:
+			case DogState.TROTTING_CODE: {
+				boolean isRunning = dogState == DogState.CHASING_CODE;
+				double speed = isRunning ? state.dogRunningSpeeds[dogIndex] : state.dogWalkingSpeeds[dogIndex];
+				double dogNewRow = state.ballRows[ballIndex];
+				double dogNewColumn = state.ballColumns[ballIndex];
+				double fraction = speed * quietSteps / (getDistance(dogOldRow, dogOldColumn, dogNewRow, dogNewColumn) * inverseGranularity);
+				state.dogRows[dogIndex] = ParkState.clampToPark(dogOldRow + (dogNewRow - dogOldRow) * fraction);
+				state.dogColumns[dogIndex] = ParkState.clampToPark(dogOldColumn + (dogNewColumn - dogOldColumn) * fraction);
+				if(isRunning)
+					state.decreaseDogExerciseTicks(dogIndex, (long) quietSteps * ticksPerStep);
+				break;
+			}
+			case DogState.RETURNING_CODE: {
+				int ownerHeadingFor = state.dogOwnersHeadingFor[dogIndex];
+				double speed = state.dogWalkingSpeeds[dogIndex];
+				double ownerRow = state.ownerRows[ownerHeadingFor];
+				double ownerColumn = state.ownerColumns[ownerHeadingFor];
+				if(!state.ownerMoving[ownerHeadingFor]) {
+					double fraction = speed * quietSteps / (getDistance(dogOldRow, dogOldColumn, ownerRow, ownerColumn) * inverseGranularity);
+					setDogAndBallLocation(dogIndex, ballIndex, ParkState.clampToPark(dogOldRow + (ownerRow - dogOldRow) * fraction), ParkState.clampToPark(dogOldColumn + (ownerColumn - dogOldColumn) * fraction));
+					continue;
+				}
+
+				// The pursuit of a moving owner has no closed form, so only this dog is walked through the sub-steps
+				double ownerTargetRow = state.ownerTargetRows[ownerHeadingFor];
+				double ownerTargetColumn = state.ownerTargetColumns[ownerHeadingFor];
+				double ownerDistance = getDistance(ownerRow, ownerColumn, ownerTargetRow, ownerTargetColumn);
+				double dogRow = dogOldRow, dogColumn = dogOldColumn;
+				for(int i = 1; i <= quietSteps; i++) {
+					double ownerFraction = (ownerHeadingFor <= ownerIndex && !doubleBuffered ? i : i - 1) / (ownerDistance * inverseGranularity);
+					double ownerNewRow = ParkState.clampToPark(ownerRow + (ownerTargetRow - ownerRow) * ownerFraction);
+					double ownerNewColumn = ParkState.clampToPark(ownerColumn + (ownerTargetColumn - ownerColumn) * ownerFraction);
+					double fullDistance = getDistance(dogRow, dogColumn, ownerNewRow, ownerNewColumn);
+					dogRow = ParkState.clampToPark(dogRow + (ownerNewRow - dogRow) * speed / (fullDistance * inverseGranularity));
+					dogColumn = ParkState.clampToPark(dogColumn + (ownerNewColumn - dogColumn) * speed / (fullDistance * inverseGranularity));
+				}
+				setDogAndBallLocation(dogIndex, ballIndex, dogRow, dogColumn);
+				break;
+			}
+			default:
+				break;
+			}
+		}
+
+		for(int ownerIndex = state.movingOwners.nextIndex(0); ownerIndex != ParkState.NONE; ownerIndex = state.movingOwners.nextIndex(ownerIndex + 1)) {
+			double ownerOldRow = state.ownerRows[ownerIndex];
+			double ownerOldColumn = state.ownerColumns[ownerIndex];
+			double ownerNewRow = state.ownerTargetRows[ownerIndex];
+			double ownerNewColumn = state.ownerTargetColumns[ownerIndex];
+			double fraction = quietSteps / (getDistance(ownerOldRow, ownerOldColumn, ownerNewRow, ownerNewColumn) * inverseGranularity);
+			state.ownerRows[ownerIndex] = ParkState.clampToPark(ownerOldRow + (ownerNewRow - ownerOldRow) * fraction);
+			state.ownerColumns[ownerIndex] = ParkState.clampToPark(ownerOldColumn + (ownerNewColumn - ownerOldColumn) * fraction);
+		}
+	}
+
+	private void setDogAndBallLocation(int dogIndex, int ballIndex, double row, double column) {
+		state.dogRows[dogIndex] = row;
+		state.dogColumns[dogIndex] = column;
+		state.ballRows[ballIndex] = row;
+		state.ballColumns[ballIndex] = column;
+	}
+
+	private void updateDogsAfterMovement(int fromWord, int toWord, int[] candidates) {
+		for(int word = fromWord; word < toWord; word++)
+			for(long dogBits = state.movingDogs.getWord(word); dogBits != 0; dogBits &= dogBits - 1)
+				updateDogAfterMovement((word << 6) + Long.numberOfTrailingZeros(dogBits), candidates);
+	}
+
+	private void updateDogAfterMovement(int dogIndex, int[] candidates) {
+		int ownerIndex = state.dogOwners[dogIndex];
+		double dogRow = state.dogRows[dogIndex];
+		double dogColumn = state.dogColumns[dogIndex];
+
+		switch(state.dogStates[dogIndex]) {
+		case DogState.FETCHED_CODE: {
+			if(withinRange(dogRow, dogColumn, state.ownerRows[ownerIndex], state.ownerColumns[ownerIndex], 10.0))
+				state.setDogHeadingForPerson(dogIndex, ownerIndex);
+			else {
+				double distance = Double.MAX_VALUE;
+				int bestOwner = ParkState.NONE;
+				int numCandidates = getCandidatesWithin(ownerNeighbourhoodGrid, dogRow, dogColumn, 10.0, state.ownerRows, state.ownerColumns, candidates);
+				for(int i = 0; i < numCandidates; i++) {
+					int otherOwner = candidates[i];
+					if(otherOwner == ownerIndex)
+						continue;
+					if(withinRange(dogRow, dogColumn, state.ownerRows[otherOwner], state.ownerColumns[otherOwner], Math.min(10.0, distance))) {
+						distance = getDistance(dogRow, dogColumn, state.ownerRows[otherOwner], state.ownerColumns[otherOwner]);
+						bestOwner = otherOwner;
+					}
+				}
+				if(bestOwner != ParkState.NONE)
+					state.setDogHeadingForPerson(dogIndex, bestOwner);
+				else
+					state.setDogHeadingForPerson(dogIndex, ownerIndex);
+			}
+			break;
+		}
+		case DogState.CHASING_CODE:
+		case DogState.TROTTING_CODE:
+		case DogState.PAUSED_CODE: {
+			boolean obstacleFound = false;
+			int numCandidates = getCandidatesWithin(dogGrid, dogRow, dogColumn, 1.0, state.dogRows, state.dogColumns, candidates);
+			for(int i = 0; !obstacleFound && i < numCandidates; i++) {
+				int otherDog = candidates[i];
+				if(otherDog != dogIndex && withinRange(dogRow, dogColumn, state.dogRows[otherDog], state.dogColumns[otherDog], 1.0))
+					obstacleFound = true;
+			}
+			if(!obstacleFound) {
+				numCandidates = getCandidatesWithin(ownerGrid, dogRow, dogColumn, 1.0, state.ownerRows, state.ownerColumns, candidates);
+				for(int i = 0; !obstacleFound && i < numCandidates; i++) {
+					int anyOwner = candidates[i];
+					if(withinRange(dogRow, dogColumn, state.ownerRows[anyOwner], state.ownerColumns[anyOwner], 1.0))
+						obstacleFound = true;
+				}
+			}
+			if(obstacleFound)
+				state.setDogWalking(dogIndex);
+			else
+				state.setDogRunning(dogIndex);
+			break;
+		}
+		default:
+			break;
+		}
+	}
+
+	private int getCandidatesWithin(SpatialGrid grid, double row, double column, double range, double[] rows, double[] columns, int[] candidates) {
+		int numCandidates = grid.getCandidates(row, column, range, candidates);
+		if(proximityKernel == null)
+			return numCandidates;
+		return proximityKernel.filterWithin(row, column, rows, columns, candidates, numCandidates, ProximityKernel.getSquaredBound(range + dataError));
+	}
+
+	// Only owners whose dogs moved since the last check can have completed or changed score
+	private void updateExerciseCompletion(int currentStep) {
+		for(int word = 0; word < exercisedDogWords.length; word++) {
+			for(long dogBits = exercisedDogWords[word]; dogBits != 0; dogBits &= dogBits - 1)
+				exercisedOwners.add(state.dogOwners[(word << 6) + Long.numberOfTrailingZeros(dogBits)]);
+			exercisedDogWords[word] = 0;
+		}
+
+		for(int ownerIndex = exercisedOwners.nextIndex(0); ownerIndex != ParkState.NONE; ownerIndex = exercisedOwners.nextIndex(ownerIndex + 1)) {
+			exercisedOwners.remove(ownerIndex);
+			if(state.ownerCompleted[ownerIndex])
+				continue;
+			boolean allOwnerExerciseCompleted = true;
+			for(int dogIndex : state.ownerDogs[ownerIndex]) {
+				if(state.dogExerciseTicks[dogIndex] > 0) {
+					allOwnerExerciseCompleted = false;
+					break;
+				}
+			}
+
+			if(allOwnerExerciseCompleted) {
+				state.ownerCompleted[ownerIndex] = true;
+				state.ownerCompletionTicks[ownerIndex] = (long) currentStep * ticksPerStep;
+				numCompletedOwners++;
+			}
+			if(scoreBoard != null)
+				scoreBoard.updateOwner(ownerIndex);
+		}
+	}
+
+	static double getDistance(double row1, double column1, double row2, double column2) {
+		double deltaRow = row2 - row1;
+		double deltaColumn = column2 - column1;
+
+		return Math.sqrt(Math.pow(deltaRow, 2) + Math.pow(deltaColumn, 2));
+	}
+
+	static boolean withinRange(double row1, double column1, double row2, double column2, double range) {
+		return getDistance(row1, column1, row2, column2) <= (range + dataError);
+	}
+}
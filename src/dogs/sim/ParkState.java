@@ -0,0 +1,817 @@
+package dogs.sim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dogs.sim.Directive.Instruction;
+import dogs.sim.DogState.Transition;
+import dogs.sim.DogReference.Breed;
+import dogs.sim.Owner.OwnerName;
+
+
+public class ParkState implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static double dataError = 1E-7;
+	private static final int INITIAL_CAPACITY = 4;
+
+	// Dog state bits reported by the dog getters
+	public static final byte RUNNING = 1;
+	public static final byte WALKING = 2;
+	public static final byte HEADING_FOR_BALL = 4;
+	public static final byte HEADING_FOR_PERSON = 8;
+	public static final byte WAITING_FOR_PERSON = 16;
+	public static final byte HAS_BALL = 32;
+	public static final int NONE = -1;
+	public static final int DEFAULT_TICKS_PER_SECOND = 100;
+	public static final long NEVER = Long.MAX_VALUE;
+
+	private static final AtomicInteger nextParkID = new AtomicInteger();
+
+	// Park that snapshots, views and clones of this state were taken from
+	private int parkID;
+
+	// Durations are counted in sub-step ticks and only converted to seconds at the API
+	int ticksPerSecond;
+
+	// Round whose decisions are being made, against which action times count down
+	int round;
+
+	// Owners
+	int numOwners;
+	OwnerName[] ownerNames;
+	double[] ownerRows, ownerColumns;
+	Instruction[] ownerActions;
+	long[] ownerActionTicks;
+	int[] ownerActionRounds;
+	String[] ownerSignals;
+	long[] ownerCompletionTicks;
+	boolean[] ownerCompleted;
+	int[][] ownerDogs;
+	boolean[] ownerMoving, ownerExited;
+	double[] ownerTargetRows, ownerTargetColumns;
+
+	// Dogs
+	int numDogs;
+	Breed[] dogBreeds;
+	int[] dogRealIDs, dogRandomIDs;
+	int[] dogOwners, dogOwnersWaitingFor, dogOwnersHeadingFor;
+	double[] dogRunningSpeeds, dogWalkingSpeeds;
+	double[] dogRows, dogColumns;
+	byte[] dogStates;
+	long[] dogWaitingTicks, dogExerciseTicks;
+	boolean[] dogMoving;
+	double[] dogTargetRows, dogTargetColumns;
+	int[] dogBalls;
+
+	// Balls
+	int numBalls;
+	int[] ballDogs;
+	double[] ballRows, ballColumns;
+
+	// Entities the engine has to visit in every sub-step
+	IndexSet movingOwners, movingDogs, waitingDogs;
+
+	// Pairwise owner distances and signal visibility, brought up to date for owners that moved when read
+	double[] ownerDistances;
+	long[] ownerVisibility;
+	IndexSet staleOwners;
+	private boolean ownerDistancesShared = false;
+
+	// Arrays that stay the same for an entity once added, shared by every snapshot, view and fork until one adds an entity
+	private boolean entitiesShared = false;
+
+	// Views
+	Owner[] owners;
+	Dog[] dogs;
+	Ball[] balls;
+
+	// Snapshot viewing
+	private int viewer = NONE;
+	private boolean shared = false;
+
+	public ParkState() {
+		this(DEFAULT_TICKS_PER_SECOND);
+	}
+
+	/**
+	 * Empty park state
+	 *
+	 * @param ticksPerSecond  number of sub-steps per second that durations are counted in
+	 *
+	 */
+	public ParkState(int ticksPerSecond) {
+		this.ticksPerSecond = ticksPerSecond;
+		parkID = nextParkID.getAndIncrement();
+		ownerNames = new OwnerName[INITIAL_CAPACITY];
+		ownerRows = new double[INITIAL_CAPACITY];
+		ownerColumns = new double[INITIAL_CAPACITY];
+		ownerActions = new Instruction[INITIAL_CAPACITY];
+		ownerActionTicks = new long[INITIAL_CAPACITY];
+		ownerActionRounds = new int[INITIAL_CAPACITY];
+		ownerSignals = new String[INITIAL_CAPACITY];
+		ownerCompletionTicks = new long[INITIAL_CAPACITY];
+		ownerCompleted = new boolean[INITIAL_CAPACITY];
+		ownerDogs = new int[INITIAL_CAPACITY][];
+		ownerMoving = new boolean[INITIAL_CAPACITY];
+		ownerExited = new boolean[INITIAL_CAPACITY];
+		ownerTargetRows = new double[INITIAL_CAPACITY];
+		ownerTargetColumns = new double[INITIAL_CAPACITY];
+		owners = new Owner[INITIAL_CAPACITY];
+
+		dogBreeds = new Breed[INITIAL_CAPACITY];
+		dogRealIDs = new int[INITIAL_CAPACITY];
+		dogRandomIDs = new int[INITIAL_CAPACITY];
+		dogOwners = new int[INITIAL_CAPACITY];
+		dogOwnersWaitingFor = new int[INITIAL_CAPACITY];
+		dogOwnersHeadingFor = new int[INITIAL_CAPACITY];
+		dogRunningSpeeds = new double[INITIAL_CAPACITY];
+		dogWalkingSpeeds = new double[INITIAL_CAPACITY];
+		dogRows = new double[INITIAL_CAPACITY];
+		dogColumns = new double[INITIAL_CAPACITY];
+		dogStates = new byte[INITIAL_CAPACITY];
+		dogWaitingTicks = new long[INITIAL_CAPACITY];
+		dogExerciseTicks = new long[INITIAL_CAPACITY];
+		dogMoving = new boolean[INITIAL_CAPACITY];
+		dogTargetRows = new double[INITIAL_CAPACITY];
+		dogTargetColumns = new double[INITIAL_CAPACITY];
+		dogBalls = new int[INITIAL_CAPACITY];
+		dogs = new Dog[INITIAL_CAPACITY];
+
+		ballDogs = new int[INITIAL_CAPACITY];
+		ballRows = new double[INITIAL_CAPACITY];
+		ballColumns = new double[INITIAL_CAPACITY];
+		balls = new Ball[INITIAL_CAPACITY];
+
+		movingOwners = new IndexSet(INITIAL_CAPACITY);
+		movingDogs = new IndexSet(INITIAL_CAPACITY);
+		waitingDogs = new IndexSet(INITIAL_CAPACITY);
+
+		ownerDistances = new double[0];
+		ownerVisibility = new long[0];
+		staleOwners = new IndexSet(INITIAL_CAPACITY);
+	}
+
+	private ParkState(ParkState snapshot, int viewer) {
+		shareArraysOf(snapshot);
+		this.viewer = viewer;
+		this.shared = true;
+		this.owners = new Owner[numOwners];
+		this.dogs = new Dog[numDogs];
+		this.balls = new Ball[numBalls];
+	}
+
+	private void shareArraysOf(ParkState other) {
+		parkID = other.parkID;
+		ticksPerSecond = other.ticksPerSecond;
+		round = other.round;
+		numOwners = other.numOwners;
+		ownerNames = other.ownerNames;
+		ownerRows = other.ownerRows;
+		ownerColumns = other.ownerColumns;
+		ownerActions = other.ownerActions;
+		ownerActionTicks = other.ownerActionTicks;
+		ownerActionRounds = other.ownerActionRounds;
+		ownerSignals = other.ownerSignals;
+		ownerCompletionTicks = other.ownerCompletionTicks;
+		ownerCompleted = other.ownerCompleted;
+		ownerDogs = other.ownerDogs;
+		ownerMoving = other.ownerMoving;
+		ownerExited = other.ownerExited;
+		ownerTargetRows = other.ownerTargetRows;
+		ownerTargetColumns = other.ownerTargetColumns;
+
+		numDogs = other.numDogs;
+		dogBreeds = other.dogBreeds;
+		dogRealIDs = other.dogRealIDs;
+		dogRandomIDs = other.dogRandomIDs;
+		dogOwners = other.dogOwners;
+		dogOwnersWaitingFor = other.dogOwnersWaitingFor;
+		dogOwnersHeadingFor = other.dogOwnersHeadingFor;
+		dogRunningSpeeds = other.dogRunningSpeeds;
+		dogWalkingSpeeds = other.dogWalkingSpeeds;
+		dogRows = other.dogRows;
+		dogColumns = other.dogColumns;
+		dogStates = other.dogStates;
+		dogWaitingTicks = other.dogWaitingTicks;
+		dogExerciseTicks = other.dogExerciseTicks;
+		dogMoving = other.dogMoving;
+		dogTargetRows = other.dogTargetRows;
+		dogTargetColumns = other.dogTargetColumns;
+		dogBalls = other.dogBalls;
+
+		numBalls = other.numBalls;
+		ballDogs = other.ballDogs;
+		ballRows = other.ballRows;
+		ballColumns = other.ballColumns;
+
+		movingOwners = other.movingOwners;
+		movingDogs = other.movingDogs;
+		waitingDogs = other.waitingDogs;
+
+		ownerDistances = other.ownerDistances;
+		ownerVisibility = other.ownerVisibility;
+		staleOwners = other.staleOwners;
+		ownerDistancesShared = true;
+		entitiesShared = true;
+		other.entitiesShared = true;
+	}
+
+	private void copyEntityArrays() {
+		if(!entitiesShared)
+			return;
+		dogBreeds = dogBreeds.clone();
+		dogRealIDs = dogRealIDs.clone();
+		dogRandomIDs = dogRandomIDs.clone();
+		dogOwners = dogOwners.clone();
+		dogRunningSpeeds = dogRunningSpeeds.clone();
+		dogWalkingSpeeds = dogWalkingSpeeds.clone();
+		entitiesShared = false;
+	}
+
+	private void copyMutableArrays() {
+		ownerNames = ownerNames.clone();
+		ownerRows = ownerRows.clone();
+		ownerColumns = ownerColumns.clone();
+		ownerActions = ownerActions.clone();
+		ownerActionTicks = ownerActionTicks.clone();
+		ownerActionRounds = ownerActionRounds.clone();
+		ownerSignals = ownerSignals.clone();
+		ownerCompletionTicks = ownerCompletionTicks.clone();
+		ownerCompleted = ownerCompleted.clone();
+		ownerDogs = ownerDogs.clone();
+		ownerMoving = ownerMoving.clone();
+		ownerExited = ownerExited.clone();
+		ownerTargetRows = ownerTargetRows.clone();
+		ownerTargetColumns = ownerTargetColumns.clone();
+
+		dogOwnersWaitingFor = dogOwnersWaitingFor.clone();
+		dogOwnersHeadingFor = dogOwnersHeadingFor.clone();
+		dogRows = dogRows.clone();
+		dogColumns = dogColumns.clone();
+		dogStates = dogStates.clone();
+		dogWaitingTicks = dogWaitingTicks.clone();
+		dogExerciseTicks = dogExerciseTicks.clone();
+		dogMoving = dogMoving.clone();
+		dogTargetRows = dogTargetRows.clone();
+		dogTargetColumns = dogTargetColumns.clone();
+		dogBalls = dogBalls.clone();
+
+		ballDogs = ballDogs.clone();
+		ballRows = ballRows.clone();
+		ballColumns = ballColumns.clone();
+
+		movingOwners = movingOwners.copy();
+		movingDogs = movingDogs.copy();
+		waitingDogs = waitingDogs.copy();
+		staleOwners = staleOwners.copy();
+	}
+
+	/**
+	 * Take an immutable snapshot of the park that players can be given read-only views of
+	 *
+	 * @return  a snapshot sharing no mutable arrays with this state
+	 *
+	 */
+	public ParkState snapshot() {
+		updateOwnerDistances();
+		ownerDistancesShared = true;
+		ParkState snapshot = new ParkState(this, NONE);
+		snapshot.copyMutableArrays();
+		return snapshot;
+	}
+
+	/**
+	 * Fork the park into a state that continues independently of this one
+	 *
+	 * The fork shares all arrays with this state, and whichever of the two writes
+	 * first gets its own copy, so a fork that is never advanced costs no copies.
+	 * Entities of the fork keep their indices and IDs, but get views of their own.
+	 *
+	 * @return  a copy-on-write fork of this state
+	 *
+	 */
+	public ParkState fork() {
+		updateOwnerDistances();
+		ownerDistancesShared = true;
+		shared = true;
+		return new ParkState(this, NONE);
+	}
+
+	/**
+	 * Get the view of this snapshot seen by an owner
+	 *
+	 * Signals of owners more than 50 meters away and the exercise status of other owners
+	 * are hidden lazily when read. The arrays are shared with the snapshot until the
+	 * player writes to any entity, at which point the view gets its own masked copy.
+	 *
+	 * @param viewer  index of the owner receiving the view
+	 * @return        a copy-on-write view of the snapshot
+	 *
+	 */
+	public ParkState getViewFor(int viewer) {
+		return new ParkState(this, viewer);
+	}
+
+	void ensureWritable() {
+		if(!shared)
+			return;
+
+		copyMutableArrays();
+		if(viewer != NONE) {
+			for(int i = 0; i < numOwners; i++) {
+				ownerSignals[i] = getOwnerSignal(i);
+				ownerCompletionTicks[i] = getOwnerCompletionTicks(i);
+				ownerCompleted[i] = isOwnerCompleted(i);
+			}
+			for(int i = 0; i < numDogs; i++)
+				dogExerciseTicks[i] = getDogExerciseTicks(i);
+		}
+		viewer = NONE;
+		shared = false;
+	}
+
+	String getOwnerSignal(int ownerIndex) {
+		if(viewer != NONE && ownerIndex != viewer && !isWithinSignalRange(viewer, ownerIndex))
+			return "_";
+		return ownerSignals[ownerIndex];
+	}
+
+	long getOwnerCompletionTicks(int ownerIndex) {
+		if(viewer != NONE && ownerIndex != viewer)
+			return NEVER;
+		return ownerCompletionTicks[ownerIndex];
+	}
+
+	boolean isOwnerCompleted(int ownerIndex) {
+		if(viewer != NONE && ownerIndex != viewer)
+			return false;
+		return ownerCompleted[ownerIndex];
+	}
+
+	long getDogExerciseTicks(int dogIndex) {
+		if(viewer != NONE && dogOwners[dogIndex] != viewer)
+			return 0;
+		return dogExerciseTicks[dogIndex];
+	}
+
+	public int getTicksPerSecond() {
+		return ticksPerSecond;
+	}
+
+	public double toSeconds(long ticks) {
+		return ticks == NEVER ? Double.MAX_VALUE : (double) ticks / ticksPerSecond;
+	}
+
+	public long toTicks(double seconds) {
+		return seconds == Double.MAX_VALUE ? NEVER : Math.round(seconds * ticksPerSecond);
+	}
+
+	public double getOwnerDistance(int ownerIndex1, int ownerIndex2) {
+		updateOwnerDistances();
+		return ownerDistances[ownerIndex1 * numOwners + ownerIndex2];
+	}
+
+	public boolean isWithinSignalRange(int ownerIndex1, int ownerIndex2) {
+		updateOwnerDistances();
+		return (ownerVisibility[ownerIndex1 * IndexSet.getNumWords(numOwners) + (ownerIndex2 >>> 6)] & (1L << ownerIndex2)) != 0;
+	}
+
+	void markOwnerMoved(int ownerIndex) {
+		staleOwners.add(ownerIndex);
+	}
+
+	/**
+	 * Recompute the distances and signal visibility of the owners that moved
+	 *
+	 * Only the rows and columns of owners that moved since the last update are
+	 * recomputed, and the matrix is copied first if a snapshot still shares it.
+	 *
+	 */
+	void updateOwnerDistances() {
+		int numWords = IndexSet.getNumWords(numOwners);
+		if(ownerDistances.length != numOwners * numOwners) {
+			ownerDistances = new double[numOwners * numOwners];
+			ownerVisibility = new long[numOwners * numWords];
+			ownerDistancesShared = false;
+			for(int ownerIndex = 0; ownerIndex < numOwners; ownerIndex++)
+				staleOwners.add(ownerIndex);
+		}
+		if(staleOwners.nextIndex(0) == NONE)
+			return;
+		if(ownerDistancesShared) {
+			ownerDistances = ownerDistances.clone();
+			ownerVisibility = ownerVisibility.clone();
+			ownerDistancesShared = false;
+		}
+
+		for(int ownerIndex1 = staleOwners.nextIndex(0); ownerIndex1 != NONE; ownerIndex1 = staleOwners.nextIndex(ownerIndex1 + 1)) {
+			for(int ownerIndex2 = 0; ownerIndex2 < numOwners; ownerIndex2++) {
+				double deltaRow = ownerRows[ownerIndex2] - ownerRows[ownerIndex1];
+				double deltaColumn = ownerColumns[ownerIndex2] - ownerColumns[ownerIndex1];
+				double distance = Math.sqrt(Math.pow(deltaRow, 2) + Math.pow(deltaColumn, 2));
+				ownerDistances[ownerIndex1 * numOwners + ownerIndex2] = distance;
+				ownerDistances[ownerIndex2 * numOwners + ownerIndex1] = distance;
+
+				long visibleBit1 = 1L << ownerIndex2, visibleBit2 = 1L << ownerIndex1;
+				int word1 = ownerIndex1 * numWords + (ownerIndex2 >>> 6), word2 = ownerIndex2 * numWords + (ownerIndex1 >>> 6);
+				if(distance <= 50.0 + dataError) {
+					ownerVisibility[word1] |= visibleBit1;
+					ownerVisibility[word2] |= visibleBit2;
+				}
+				else {
+					ownerVisibility[word1] &= ~visibleBit1;
+					ownerVisibility[word2] &= ~visibleBit2;
+				}
+			}
+		}
+		staleOwners.clear();
+	}
+
+	int addOwner(Owner owner, OwnerName name) {
+		copyEntityArrays();
+		if(numOwners == owners.length) {
+			int capacity = 2 * owners.length;
+			ownerNames = Arrays.copyOf(ownerNames, capacity);
+			ownerRows = Arrays.copyOf(ownerRows, capacity);
+			ownerColumns = Arrays.copyOf(ownerColumns, capacity);
+			ownerActions = Arrays.copyOf(ownerActions, capacity);
+			ownerActionTicks = Arrays.copyOf(ownerActionTicks, capacity);
+			ownerActionRounds = Arrays.copyOf(ownerActionRounds, capacity);
+			ownerSignals = Arrays.copyOf(ownerSignals, capacity);
+			ownerCompletionTicks = Arrays.copyOf(ownerCompletionTicks, capacity);
+			ownerCompleted = Arrays.copyOf(ownerCompleted, capacity);
+			ownerDogs = Arrays.copyOf(ownerDogs, capacity);
+			ownerMoving = Arrays.copyOf(ownerMoving, capacity);
+			ownerExited = Arrays.copyOf(ownerExited, capacity);
+			ownerTargetRows = Arrays.copyOf(ownerTargetRows, capacity);
+			ownerTargetColumns = Arrays.copyOf(ownerTargetColumns, capacity);
+			owners = Arrays.copyOf(owners, capacity);
+			movingOwners.ensureCapacity(capacity);
+		}
+
+		int index = numOwners++;
+		ownerNames[index] = name;
+		ownerRows[index] = 0.0;
+		ownerColumns[index] = 0.0;
+		ownerActions[index] = Instruction.NOTHING;
+		ownerActionTicks[index] = 0;
+		ownerActionRounds[index] = round;
+		ownerSignals[index] = "_";
+		ownerCompletionTicks[index] = NEVER;
+		ownerCompleted[index] = false;
+		ownerDogs[index] = new int[0];
+		owners[index] = owner;
+		staleOwners.add(index);
+		return index;
+	}
+
+	int addDog(Dog dog, Breed breed, int ownerIndex, int realID) {
+		copyEntityArrays();
+		if(numDogs == dogs.length) {
+			int capacity = 2 * dogs.length;
+			dogBreeds = Arrays.copyOf(dogBreeds, capacity);
+			dogRealIDs = Arrays.copyOf(dogRealIDs, capacity);
+			dogRandomIDs = Arrays.copyOf(dogRandomIDs, capacity);
+			dogOwners = Arrays.copyOf(dogOwners, capacity);
+			dogOwnersWaitingFor = Arrays.copyOf(dogOwnersWaitingFor, capacity);
+			dogOwnersHeadingFor = Arrays.copyOf(dogOwnersHeadingFor, capacity);
+			dogRunningSpeeds = Arrays.copyOf(dogRunningSpeeds, capacity);
+			dogWalkingSpeeds = Arrays.copyOf(dogWalkingSpeeds, capacity);
+			dogRows = Arrays.copyOf(dogRows, capacity);
+			dogColumns = Arrays.copyOf(dogColumns, capacity);
+			dogStates = Arrays.copyOf(dogStates, capacity);
+			dogWaitingTicks = Arrays.copyOf(dogWaitingTicks, capacity);
+			dogExerciseTicks = Arrays.copyOf(dogExerciseTicks, capacity);
+			dogMoving = Arrays.copyOf(dogMoving, capacity);
+			dogTargetRows = Arrays.copyOf(dogTargetRows, capacity);
+			dogTargetColumns = Arrays.copyOf(dogTargetColumns, capacity);
+			dogBalls = Arrays.copyOf(dogBalls, capacity);
+			dogs = Arrays.copyOf(dogs, capacity);
+			movingDogs.ensureCapacity(capacity);
+			waitingDogs.ensureCapacity(capacity);
+		}
+
+		int index = numDogs++;
+		dogBreeds[index] = breed;
+		dogRealIDs[index] = realID;
+		dogRandomIDs[index] = new Random().nextInt();
+		dogOwners[index] = ownerIndex;
+		dogOwnersWaitingFor[index] = ownerIndex;
+		dogOwnersHeadingFor[index] = NONE;
+		dogRunningSpeeds[index] = DogReference.getRunningSpeed(breed);
+		dogWalkingSpeeds[index] = DogReference.getWalkingSpeed(breed);
+		dogRows[index] = 1.0;
+		dogColumns[index] = 0.0;
+		dogStates[index] = DogState.WAITING.getCode();
+		dogWaitingTicks[index] = toTicks(Dog.MAX_WAITING_TIME);
+		dogExerciseTicks[index] = toTicks(Dog.TOTAL_EXERCISE_TIME);
+		dogBalls[index] = NONE;
+		dogs[index] = dog;
+		updateDogActivity(index);
+		return index;
+	}
+
+	int addBall(Ball ball, int dogIndex) {
+		copyEntityArrays();
+		if(numBalls == balls.length) {
+			int capacity = 2 * balls.length;
+			ballDogs = Arrays.copyOf(ballDogs, capacity);
+			ballRows = Arrays.copyOf(ballRows, capacity);
+			ballColumns = Arrays.copyOf(ballColumns, capacity);
+			balls = Arrays.copyOf(balls, capacity);
+		}
+
+		int index = numBalls++;
+		ballDogs[index] = dogIndex;
+		ballRows[index] = 1.0;
+		ballColumns[index] = 0.0;
+		balls[index] = ball;
+		if(dogIndex != NONE)
+			dogBalls[dogIndex] = index;
+		return index;
+	}
+
+	/**
+	 * Check whether another state is a snapshot, view or clone of the same park
+	 *
+	 * Owners, dogs and balls keep their IDs across all states of a park, so an entity
+	 * of one can be looked up in the other by ID.
+	 *
+	 * @param other  state to compare with
+	 * @return       whether both states come from the same park
+	 *
+	 */
+	public boolean isSamePark(ParkState other) {
+		return other != null && other.parkID == parkID;
+	}
+
+	public int getNumOwners() {
+		return numOwners;
+	}
+
+	public int getNumDogs() {
+		return numDogs;
+	}
+
+	public Owner getOwner(int ownerIndex) {
+		if(ownerIndex == NONE)
+			return null;
+		if(owners[ownerIndex] == null)
+			owners[ownerIndex] = new Owner(this, ownerIndex);
+		return owners[ownerIndex];
+	}
+
+	public Dog getDog(int dogIndex) {
+		if(dogIndex == NONE)
+			return null;
+		if(dogs[dogIndex] == null)
+			dogs[dogIndex] = new Dog(this, dogIndex);
+		return dogs[dogIndex];
+	}
+
+	public Ball getBall(int ballIndex) {
+		if(ballIndex == NONE)
+			return null;
+		if(balls[ballIndex] == null)
+			balls[ballIndex] = new Ball(this, ballIndex);
+		return balls[ballIndex];
+	}
+
+	public boolean isDogInState(int dogIndex, byte stateBits) {
+		return (getDogState(dogIndex).getBits() & stateBits) != 0;
+	}
+
+	public DogState getDogState(int dogIndex) {
+		return DogState.of(dogStates[dogIndex]);
+	}
+
+	/**
+	 * Start the decisions of a round
+	 *
+	 * Action times of owners in the park count down by one with every round, so
+	 * starting a round decreases all of them without visiting any owner.
+	 *
+	 * @param round  number of the round starting
+	 *
+	 */
+	void startRound(int round) {
+		this.round = round;
+	}
+
+	long getOwnerActionTicks(int ownerIndex) {
+		if(ownerExited[ownerIndex])
+			return ownerActionTicks[ownerIndex];
+		return Math.max(0, ownerActionTicks[ownerIndex] - (long) (round - ownerActionRounds[ownerIndex]) * ticksPerSecond);
+	}
+
+	void setOwnerActionTicks(int ownerIndex, long actionTicks) {
+		ownerActionTicks[ownerIndex] = actionTicks;
+		ownerActionRounds[ownerIndex] = round;
+	}
+
+	void setOwnerMoving(int ownerIndex, boolean moving) {
+		ownerMoving[ownerIndex] = moving;
+		movingOwners.set(ownerIndex, moving && !ownerExited[ownerIndex]);
+	}
+
+	void setOwnerExited(int ownerIndex) {
+		setOwnerActionTicks(ownerIndex, getOwnerActionTicks(ownerIndex));
+		ownerExited[ownerIndex] = true;
+		setOwnerMoving(ownerIndex, false);
+		for(int dogIndex : ownerDogs[ownerIndex])
+			updateDogActivity(dogIndex);
+	}
+
+	void setDogMoving(int dogIndex, boolean moving) {
+		dogMoving[dogIndex] = moving;
+		updateDogActivity(dogIndex);
+	}
+
+	/**
+	 * Move a dog into the active set matching its state
+	 *
+	 * Dogs that move or are about to pick an owner are moving, dogs waiting for
+	 * another owner are counting down their waiting time, and all other dogs (as
+	 * well as the dogs of owners that left the park) are idle.
+	 *
+	 * @param dogIndex  index of the dog whose state changed
+	 *
+	 */
+	void updateDogActivity(int dogIndex) {
+		DogState dogState = getDogState(dogIndex);
+		boolean active = !ownerExited[dogOwners[dogIndex]];
+		boolean moving = active && (dogMoving[dogIndex] || dogState.isMoving());
+		boolean waiting = active && !moving && dogState == DogState.WAITING && dogOwnersWaitingFor[dogIndex] != dogOwners[dogIndex];
+		movingDogs.set(dogIndex, moving);
+		waitingDogs.set(dogIndex, waiting);
+	}
+
+	private void changeDogState(int dogIndex, Transition transition) {
+		dogStates[dogIndex] = getDogState(dogIndex).next(transition).getCode();
+	}
+
+	void setDogRunning(int dogIndex) {
+		changeDogState(dogIndex, Transition.RUN);
+	}
+
+	void setDogWalking(int dogIndex) {
+		changeDogState(dogIndex, Transition.WALK);
+	}
+
+	void setDogStationary(int dogIndex) {
+		changeDogState(dogIndex, Transition.STOP);
+		updateDogActivity(dogIndex);
+	}
+
+	void setDogHasBall(int dogIndex, boolean hasBall) {
+		changeDogState(dogIndex, hasBall ? Transition.TAKE_BALL : Transition.DROP_BALL);
+		updateDogActivity(dogIndex);
+	}
+
+	void setDogHeadingForBall(int dogIndex) {
+		changeDogState(dogIndex, Transition.HEAD_FOR_BALL);
+		dogOwnersWaitingFor[dogIndex] = NONE;
+		dogOwnersHeadingFor[dogIndex] = NONE;
+		dogWaitingTicks[dogIndex] = toTicks(Dog.MAX_WAITING_TIME);
+		updateDogActivity(dogIndex);
+	}
+
+	void setDogHeadingForPerson(int dogIndex, int ownerIndex) {
+		changeDogState(dogIndex, Transition.HEAD_FOR_PERSON);
+		dogOwnersHeadingFor[dogIndex] = ownerIndex;
+		dogOwnersWaitingFor[dogIndex] = NONE;
+		dogWaitingTicks[dogIndex] = toTicks(Dog.MAX_WAITING_TIME);
+		updateDogActivity(dogIndex);
+	}
+
+	void setDogWaitingForPerson(int dogIndex, int ownerIndex) {
+		changeDogState(dogIndex, Transition.WAIT_FOR_PERSON);
+		dogOwnersHeadingFor[dogIndex] = NONE;
+		dogOwnersWaitingFor[dogIndex] = ownerIndex;
+		dogWaitingTicks[dogIndex] = toTicks(Dog.MAX_WAITING_TIME);
+		updateDogActivity(dogIndex);
+	}
+
+	void decreaseDogWaitingTicks(int dogIndex, long waitingTicks) {
+		dogWaitingTicks[dogIndex] = Math.max(0, dogWaitingTicks[dogIndex] - waitingTicks);
+	}
+
+	void decreaseDogExerciseTicks(int dogIndex, long exerciseTicks) {
+		dogExerciseTicks[dogIndex] = Math.max(0, dogExerciseTicks[dogIndex] - exerciseTicks);
+	}
+
+	/**
+	 * Write the parts of the park that change while it runs
+	 *
+	 * Names, breeds, speeds and owners of the entities come from the configuration,
+	 * so only the numbers of entities are written to check a checkpoint against it.
+	 * The active sets and owner distances follow from the rest and are not written.
+	 *
+	 * @param out  output to write to
+	 *
+	 */
+	void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeInt(numOwners);
+		out.writeInt(numDogs);
+		out.writeInt(numBalls);
+		out.writeInt(round);
+
+		for(int i = 0; i < numOwners; i++) {
+			out.writeDouble(ownerRows[i]);
+			out.writeDouble(ownerColumns[i]);
+			out.writeByte(ownerActions[i].ordinal());
+			out.writeLong(ownerActionTicks[i]);
+			out.writeInt(ownerActionRounds[i]);
+			out.writeUTF(ownerSignals[i]);
+			out.writeLong(ownerCompletionTicks[i]);
+			out.writeBoolean(ownerCompleted[i]);
+			out.writeBoolean(ownerMoving[i]);
+			out.writeBoolean(ownerExited[i]);
+			out.writeDouble(ownerTargetRows[i]);
+			out.writeDouble(ownerTargetColumns[i]);
+		}
+		for(int i = 0; i < numDogs; i++) {
+			out.writeInt(dogRandomIDs[i]);
+			out.writeInt(dogOwnersWaitingFor[i]);
+			out.writeInt(dogOwnersHeadingFor[i]);
+			out.writeDouble(dogRows[i]);
+			out.writeDouble(dogColumns[i]);
+			out.writeByte(dogStates[i]);
+			out.writeLong(dogWaitingTicks[i]);
+			out.writeLong(dogExerciseTicks[i]);
+			out.writeBoolean(dogMoving[i]);
+			out.writeDouble(dogTargetRows[i]);
+			out.writeDouble(dogTargetColumns[i]);
+			out.writeInt(dogBalls[i]);
+		}
+		for(int i = 0; i < numBalls; i++) {
+			out.writeInt(ballDogs[i]);
+			out.writeDouble(ballRows[i]);
+			out.writeDouble(ballColumns[i]);
+		}
+	}
+
+	/**
+	 * Restore a park from a checkpoint of the same configuration
+	 *
+	 * @param in  input written by writeCheckpoint
+	 *
+	 */
+	void readCheckpoint(DataInput in) throws IOException {
+		if(in.readInt() != numOwners || in.readInt() != numDogs || in.readInt() != numBalls)
+			throw new IOException("The checkpoint does not match the owners and dogs of the configuration!");
+		round = in.readInt();
+
+		Instruction[] instructions = Instruction.values();
+		for(int i = 0; i < numOwners; i++) {
+			ownerRows[i] = in.readDouble();
+			ownerColumns[i] = in.readDouble();
+			ownerActions[i] = instructions[in.readByte()];
+			ownerActionTicks[i] = in.readLong();
+			ownerActionRounds[i] = in.readInt();
+			ownerSignals[i] = in.readUTF();
+			ownerCompletionTicks[i] = in.readLong();
+			ownerCompleted[i] = in.readBoolean();
+			ownerMoving[i] = in.readBoolean();
+			ownerExited[i] = in.readBoolean();
+			ownerTargetRows[i] = in.readDouble();
+			ownerTargetColumns[i] = in.readDouble();
+		}
+		for(int i = 0; i < numDogs; i++) {
+			dogRandomIDs[i] = in.readInt();
+			dogOwnersWaitingFor[i] = in.readInt();
+			dogOwnersHeadingFor[i] = in.readInt();
+			dogRows[i] = in.readDouble();
+			dogColumns[i] = in.readDouble();
+			dogStates[i] = in.readByte();
+			dogWaitingTicks[i] = in.readLong();
+			dogExerciseTicks[i] = in.readLong();
+			dogMoving[i] = in.readBoolean();
+			dogTargetRows[i] = in.readDouble();
+			dogTargetColumns[i] = in.readDouble();
+			dogBalls[i] = in.readInt();
+		}
+		for(int i = 0; i < numBalls; i++) {
+			ballDogs[i] = in.readInt();
+			ballRows[i] = in.readDouble();
+			ballColumns[i] = in.readDouble();
+		}
+
+		for(int i = 0; i < numOwners; i++) {
+			movingOwners.set(i, ownerMoving[i] && !ownerExited[i]);
+			staleOwners.add(i);
+		}
+		for(int i = 0; i < numDogs; i++)
+			updateDogActivity(i);
+	}
+
+	static double clampToPark(double value) {
+		return value < 0 ? 0 : value > ParkLocation.PARK_SIZE - 1 + dataError ? ParkLocation.PARK_SIZE - 1 : value;
+	}
+}
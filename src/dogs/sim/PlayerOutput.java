@@ -0,0 +1,57 @@
+package dogs.sim;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+public class PlayerOutput extends FilterOutputStream {
+
+	private static final Set<Thread> silencedThreads = ConcurrentHashMap.newKeySet();
+	private static boolean installed = false;
+
+	/**
+	 * Standard output that drops whatever silenced threads print
+	 *
+	 * Players print to System.out directly, so players that must stay quiet, such as
+	 * those of a fixed-step reference park, are silenced by the threads running them.
+	 * Output of every other thread goes through unchanged.
+	 *
+	 * @param out  standard output to write to
+	 *
+	 */
+	private PlayerOutput(OutputStream out) {
+		super(out);
+	}
+
+	// Installed once per process, and only by simulations that silence players
+	public static synchronized void install() {
+		if(installed)
+			return;
+		installed = true;
+		System.setOut(new PrintStream(new PlayerOutput(System.out), true));
+	}
+
+	public static void silence(Thread thread) {
+		silencedThreads.add(thread);
+	}
+
+	public static void unsilence(Thread thread) {
+		silencedThreads.remove(thread);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if(!silencedThreads.contains(Thread.currentThread()))
+			out.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if(!silencedThreads.contains(Thread.currentThread()))
+			out.write(b, off, len);
+	}
+}
@@ -8,17 +8,20 @@ public class PlayerWrapper {
     private Player player;
     private String playerName;
     private long timeout;
+    private Log log;
 
-    public PlayerWrapper(Player player, String playerName, long timeout) {
+    public PlayerWrapper(Player player, String playerName, long timeout, Log log) {
         this.player = player;
         this.playerName = playerName;
         this.timeout = timeout;
+        this.log = log;
         this.timer = new Timer();
     }
 
     public Directive chooseDirective(Integer round, Owner myOwner, List<Owner> otherOwners) {
     	
-    	Log.writeToVerboseLogFile("Team " + this.playerName + " choosing a directive for round " + round + "...");
+    	if(log.getVerboseLoggingStatus())
+    		log.writeToVerboseLogFile("Team " + this.playerName + " choosing a directive for round " + round + "...");
         
     	Directive directive = new Directive();
 
@@ -29,13 +32,43 @@ public class PlayerWrapper {
             directive = timer.callWait(timeout);
         }
         catch(Exception e) {
-            Log.writeToVerboseLogFile("Team " + this.playerName + " generated an exception while choosing a directive.");
-            Log.writeToVerboseLogFile("Exception for team " + this.playerName + ": " + e);
+            log.writeToVerboseLogFile("Team " + this.playerName + " generated an exception while choosing a directive.");
+            log.writeToVerboseLogFile("Exception for team " + this.playerName + ": " + e);
+        }
+
+        return directive;
+    }
+
+    public void startDirective(Integer round, Owner myOwner, List<Owner> otherOwners) {
+    	
+    	if(log.getVerboseLoggingStatus())
+    		log.writeToVerboseLogFile("Team " + this.playerName + " choosing a directive for round " + round + "...");
+    	
+        if(!timer.isAlive())
+        	timer.start();
+        timer.callStart(() -> { return player.chooseDirective(round, myOwner, otherOwners); });
+    }
+
+    public Directive awaitDirective(long deadline) {
+    	
+    	Directive directive = new Directive();
+    	
+        try {
+            directive = timer.callWait(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        catch(Exception e) {
+            log.writeToVerboseLogFile("Team " + this.playerName + " generated an exception while choosing a directive.");
+            log.writeToVerboseLogFile("Exception for team " + this.playerName + ": " + e);
         }
 
         return directive;
     }
            
+    // Players choose their directives on the timer thread, so silencing it silences all they print from then on
+    public void silence() {
+    	PlayerOutput.silence(timer);
+    }
+
     public Player getPlayer() {
     	return player;
     }
@@ -0,0 +1,76 @@
+package dogs.sim;
+
+
+public class ProximityKernel {
+
+	private static final String VECTOR_KERNEL_CLASS = "dogs.sim.simd.VectorProximityKernel";
+
+	// Squared bounds are widened, so that no entity the exact range test accepts is filtered out
+	private static final double BOUND_MARGIN = 1e-9;
+
+	/**
+	 * Proximity filter for grid candidates
+	 *
+	 * Candidates are kept by comparing squared distances, so this only narrows the
+	 * candidates down to those that may be in range, and callers still run their
+	 * exact range test on the candidates kept. This implementation checks them one
+	 * at a time, and the vectorised one compares lanes of gathered coordinates.
+	 *
+	 */
+	public ProximityKernel() {
+	}
+
+	/**
+	 * Load the vectorised kernel if the Vector API is available
+	 *
+	 * The kernel is compiled separately with the jdk.incubator.vector module, so it
+	 * is looked up by name, and this kernel is used instead if it is missing.
+	 *
+	 * @param log  log of the simulation loading the kernel
+	 * @return     vectorised kernel, or scalar kernel as a fallback
+	 *
+	 */
+	public static ProximityKernel loadVectorized(Log log) {
+		ProximityKernel vectorKernel;
+		try {
+			vectorKernel = (ProximityKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+		} catch(ReflectiveOperationException | LinkageError e) {
+			log.writeToLogFile("Vector API is not available (" + e + "), using the scalar proximity kernel.");
+			return new ProximityKernel();
+		}
+		log.writeToLogFile("Using the vectorised proximity kernel.");
+		return vectorKernel;
+	}
+
+	public static double getSquaredBound(double range) {
+		return range * range * (1 + BOUND_MARGIN);
+	}
+
+	/**
+	 * Keep the candidates whose squared distance from a point is within a bound
+	 *
+	 * @param row            row of the point
+	 * @param column         column of the point
+	 * @param rows           rows of all entities
+	 * @param columns        columns of all entities
+	 * @param candidates     indices of the entities to check, compacted in place in the same order
+	 * @param numCandidates  number of candidates to check
+	 * @param squaredBound   largest squared distance kept
+	 * @return               number of candidates kept
+	 *
+	 */
+	public int filterWithin(double row, double column, double[] rows, double[] columns, int[] candidates, int numCandidates, double squaredBound) {
+		return filterWithin(row, column, rows, columns, candidates, 0, 0, numCandidates, squaredBound);
+	}
+
+	protected static int filterWithin(double row, double column, double[] rows, double[] columns, int[] candidates, int numKept, int from, int to, double squaredBound) {
+		for(int i = from; i < to; i++) {
+			int candidate = candidates[i];
+			double deltaRow = rows[candidate] - row;
+			double deltaColumn = columns[candidate] - column;
+			if(deltaRow * deltaRow + deltaColumn * deltaColumn <= squaredBound)
+				candidates[numKept++] = candidate;
+		}
+		return numKept;
+	}
+}
@@ -0,0 +1,76 @@
+package dogs.sim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+
+public class RestorableRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long scrambledSeed;
+	private double nextNextGaussian;
+	private boolean haveNextNextGaussian;
+
+	/**
+	 * Random generator whose position can be saved and restored
+	 *
+	 * The generator runs the same linear congruential sequence as java.util.Random,
+	 * so it draws the same numbers for the same seed, but keeps its own state where
+	 * checkpoints can read it.
+	 *
+	 * @param seed  initial seed
+	 *
+	 */
+	public RestorableRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		scrambledSeed = (seed ^ MULTIPLIER) & MASK;
+		haveNextNextGaussian = false;
+	}
+
+	@Override
+	protected synchronized int next(int bits) {
+		scrambledSeed = (scrambledSeed * MULTIPLIER + ADDEND) & MASK;
+		return (int) (scrambledSeed >>> (48 - bits));
+	}
+
+	@Override
+	public synchronized double nextGaussian() {
+		if(haveNextNextGaussian) {
+			haveNextNextGaussian = false;
+			return nextNextGaussian;
+		}
+
+		double v1, v2, s;
+		do {
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while(s >= 1 || s == 0);
+		double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+		nextNextGaussian = v2 * multiplier;
+		haveNextNextGaussian = true;
+		return v1 * multiplier;
+	}
+
+	public synchronized void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeLong(scrambledSeed);
+		out.writeDouble(nextNextGaussian);
+		out.writeBoolean(haveNextNextGaussian);
+	}
+
+	public synchronized void readCheckpoint(DataInput in) throws IOException {
+		scrambledSeed = in.readLong();
+		nextNextGaussian = in.readDouble();
+		haveNextNextGaussian = in.readBoolean();
+	}
+}
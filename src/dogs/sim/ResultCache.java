@@ -0,0 +1,155 @@
+package dogs.sim;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+public class ResultCache {
+
+	private final File directory;
+
+	/**
+	 * Cache of game results addressed by a digest of everything the game depends on
+	 *
+	 * A result is stored in a file named by its key, so a key never needs to be
+	 * invalidated: once any source, class file, configuration or setting of a game
+	 * changes, the game has a new key and is simulated again. Results are written to a
+	 * temporary file first and then moved in place, so that processes sharing a cache
+	 * never read a partial result.
+	 *
+	 * @param directoryPath  directory of the cache, which is created if it does not exist
+	 *
+	 */
+	public ResultCache(String directoryPath) throws IOException {
+		this.directory = new File(directoryPath);
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create the result cache directory!");
+	}
+
+	public String getPath() {
+		return directory.getPath();
+	}
+
+	/**
+	 * Find the result of a game
+	 *
+	 * @param key  key of the game
+	 * @return     stored result, or null if the game has not been stored or its file cannot be read
+	 *
+	 */
+	public SimulationResult get(String key) {
+		File resultFile = getResultFile(key);
+		if(!resultFile.exists())
+			return null;
+		try {
+			return SimulationResult.fromJSON(new JSONObject(new String(Files.readAllBytes(resultFile.toPath()), StandardCharsets.UTF_8)));
+		} catch(IOException | JSONException e) {
+			return null;
+		}
+	}
+
+	public void put(String key, SimulationResult result) throws IOException {
+		File resultFile = getResultFile(key);
+		File resultDirectory = resultFile.getParentFile();
+		if(!resultDirectory.isDirectory() && !resultDirectory.mkdirs())
+			throw new IOException("Cannot create the result cache directory!");
+
+		File partialFile = File.createTempFile(key, ".partial", resultDirectory);
+		try {
+			Files.write(partialFile.toPath(), result.toJSON().toString().getBytes(StandardCharsets.UTF_8));
+			Files.move(partialFile.toPath(), resultFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(JSONException e) {
+			throw new IOException("The result cannot be written!", e);
+		} finally {
+			partialFile.delete();
+		}
+	}
+
+	// Results are spread over subdirectories named by the first two digits of their keys, so that no directory grows too large
+	private File getResultFile(String key) {
+		return new File(directory, key.substring(0, 2) + File.separator + key + ".json");
+	}
+
+	public static class KeyBuilder {
+
+		private final MessageDigest digest;
+
+		/**
+		 * Builder of the key of a game from its inputs
+		 *
+		 * Every input is written with its length or its path, so that different inputs
+		 * never run together into the same bytes.
+		 *
+		 */
+		public KeyBuilder() {
+			try {
+				this.digest = MessageDigest.getInstance("SHA-256");
+			} catch(NoSuchAlgorithmException e) {
+				throw new IllegalStateException("SHA-256 is not available!", e);
+			}
+		}
+
+		public KeyBuilder add(String value) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			addLength(bytes.length);
+			digest.update(bytes);
+			return this;
+		}
+
+		public KeyBuilder add(long value) {
+			return add(Long.toString(value));
+		}
+
+		public KeyBuilder add(double value) {
+			return add(Long.toString(Double.doubleToLongBits(value)));
+		}
+
+		/**
+		 * Add the contents of files
+		 *
+		 * @param baseDirectory  directory the paths of the files are taken relative to
+		 * @param files          files in any order
+		 *
+		 */
+		public KeyBuilder addFiles(File baseDirectory, Collection<File> files) throws IOException {
+			String basePath = baseDirectory.getAbsolutePath();
+			List<File> sortedFiles = new ArrayList<>(files);
+			sortedFiles.sort(Comparator.comparing(File::getAbsolutePath));
+			add(sortedFiles.size());
+			for(File file : sortedFiles) {
+				String path = file.getAbsolutePath();
+				add(path.startsWith(basePath) ? path.substring(basePath.length()).replace(File.separatorChar, '/') : path);
+				digest.update(getFileDigest(file));
+			}
+			return this;
+		}
+
+		private void addLength(int length) {
+			digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+		}
+
+		public String build() {
+			StringBuilder key = new StringBuilder();
+			for(byte b : digest.digest())
+				key.append(String.format("%02x", b));
+			return key.toString();
+		}
+	}
+
+	// Contents are hashed for every key, since a file can be replaced without changing its size or modification time
+	private static byte[] getFileDigest(File file) throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath()));
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available!", e);
+		}
+	}
+}
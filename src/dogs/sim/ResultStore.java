@@ -0,0 +1,558 @@
+package dogs.sim;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormat;
+import java.util.*;
+
+import dogs.sim.DogReference.Breed;
+
+
+public class ResultStore implements Closeable {
+
+	private static final int OWNER_ROW_BYTES = 44;
+	private static final int NO_NAME = -1;
+	private static final int ANY_NAME = -2;
+
+	private final File namesFile, gamesFile, ownersFile;
+	private final FileChannel lockChannel;
+	private final FileLock lock;
+	private DataOutputStream namesOut, gamesOut, ownersOut;
+	private RandomAccessFile gamesIn;
+	private long gamesLength;
+
+	private final List<String> names = new ArrayList<>();
+	private final Map<String, Integer> nameIDs = new HashMap<>();
+
+	// Owner rows, one per owner of every game in the order they were appended, kept as columns
+	private int numRows = 0;
+	private long[] rowGameOffsets = new long[1024];
+	private int[] rowTeamIDs = new int[1024], rowConfigIDs = new int[1024], rowSeeds = new int[1024];
+	private double[] rowScores = new double[1024], rowExerciseTs = new double[1024], rowExerciseAs = new double[1024];
+	private int numGames = 0;
+
+	private final Map<Integer, RowList> teamIndex = new HashMap<>();
+	private final Map<Integer, RowList> configIndex = new HashMap<>();
+	private final Map<Integer, RowList> seedIndex = new HashMap<>();
+
+	/**
+	 * Append-only store of the results of finished games
+	 *
+	 * A store is a directory of three files that are only ever appended to: the names
+	 * of teams, owners and configurations, the full record of every game, and a row of
+	 * 44 bytes per owner of every game with its team, configuration, seed, score, T
+	 * and A. Rows are kept in memory as columns along with indexes from each team,
+	 * configuration and seed to its rows, so that aggregating over a selection only
+	 * visits the rows it selects and never reads the game records. Whatever a crash
+	 * leaves behind after the last complete game is dropped when the store is opened
+	 * again, and only one store can have a directory open at a time.
+	 *
+	 * @param directoryPath  directory of the store, which is created if it does not exist
+	 *
+	 */
+	public ResultStore(String directoryPath) throws IOException {
+		File directory = new File(directoryPath);
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create the result store directory!");
+
+		lockChannel = FileChannel.open(new File(directory, "lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		FileLock directoryLock;
+		try {
+			directoryLock = lockChannel.tryLock();
+		} catch(OverlappingFileLockException e) {
+			directoryLock = null;
+		}
+		if(directoryLock == null) {
+			lockChannel.close();
+			throw new IOException("The result store is already open!");
+		}
+		lock = directoryLock;
+
+		namesFile = new File(directory, "names.dat");
+		gamesFile = new File(directory, "games.dat");
+		ownersFile = new File(directory, "owners.dat");
+		try {
+			readNames();
+			readOwnerRows();
+			gamesIn = new RandomAccessFile(gamesFile, "rw");
+			recoverLastGame();
+			buildIndexes();
+
+			namesOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(namesFile, true)));
+			gamesOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(gamesFile, true)));
+			ownersOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(ownersFile, true)));
+		} catch(IOException e) {
+			lockChannel.close();
+			throw e;
+		}
+	}
+
+	private void readNames() throws IOException {
+		long validLength = 0;
+		if(namesFile.exists()) {
+			try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(namesFile)))) {
+				while(true) {
+					int length = in.readUnsignedShort();
+					byte[] bytes = new byte[length];
+					in.readFully(bytes);
+					addName(new String(bytes, StandardCharsets.UTF_8));
+					validLength += 2 + length;
+				}
+			} catch(EOFException e) {}
+		}
+		truncate(namesFile, validLength);
+	}
+
+	private void readOwnerRows() throws IOException {
+		long numStoredRows = ownersFile.exists() ? ownersFile.length() / OWNER_ROW_BYTES : 0;
+		truncate(ownersFile, numStoredRows * OWNER_ROW_BYTES);
+		if(numStoredRows == 0)
+			return;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(ownersFile), 1 << 16))) {
+			for(long row = 0; row < numStoredRows; row++)
+				addRow(in.readLong(), in.readInt(), in.readInt(), in.readInt(), in.readDouble(), in.readDouble(), in.readDouble());
+		}
+	}
+
+	// Only the game appended last can be incomplete, since every game is written in full before its rows and its rows before the next game
+	private void recoverLastGame() throws IOException {
+		gamesLength = gamesIn.length();
+		long validGamesLength = 0;
+		if(numRows > 0) {
+			long lastOffset = rowGameOffsets[numRows - 1];
+			int numLastRows = 0;
+			while(numLastRows < numRows && rowGameOffsets[numRows - 1 - numLastRows] == lastOffset)
+				numLastRows++;
+
+			boolean complete = false;
+			if(lastOffset + 8 <= gamesLength) {
+				gamesIn.seek(lastOffset);
+				int length = gamesIn.readInt();
+				int numOwners = gamesIn.readInt();
+				complete = lastOffset + 4 + length <= gamesLength && numOwners == numLastRows;
+				validGamesLength = lastOffset + 4 + length;
+			}
+			if(!complete) {
+				numRows -= numLastRows;
+				validGamesLength = lastOffset;
+				truncate(ownersFile, (long) numRows * OWNER_ROW_BYTES);
+			}
+		}
+		gamesIn.setLength(validGamesLength);
+		gamesLength = validGamesLength;
+	}
+
+	private void buildIndexes() {
+		for(int row = 0; row < numRows; row++)
+			indexRow(row);
+	}
+
+	private static void truncate(File file, long length) throws IOException {
+		if(!file.exists() && length == 0)
+			return;
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			if(randomAccessFile.length() != length)
+				randomAccessFile.setLength(length);
+		}
+	}
+
+	private int addName(String name) {
+		nameIDs.put(name, names.size());
+		names.add(name);
+		return names.size() - 1;
+	}
+
+	private int getNameID(String name) throws IOException {
+		Integer nameID = nameIDs.get(name);
+		if(nameID != null)
+			return nameID;
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length > 0xFFFF)
+			throw new IOException("The name \"" + name + "\" is too long to store!");
+		namesOut.writeShort(bytes.length);
+		namesOut.write(bytes);
+		return addName(name);
+	}
+
+	private int findNameID(String name) {
+		if(name == null)
+			return ANY_NAME;
+		return nameIDs.getOrDefault(name, NO_NAME);
+	}
+
+	private void addRow(long gameOffset, int teamID, int configID, int seed, double score, double exerciseT, double exerciseA) {
+		if(numRows == rowGameOffsets.length) {
+			int capacity = 2 * numRows;
+			rowGameOffsets = Arrays.copyOf(rowGameOffsets, capacity);
+			rowTeamIDs = Arrays.copyOf(rowTeamIDs, capacity);
+			rowConfigIDs = Arrays.copyOf(rowConfigIDs, capacity);
+			rowSeeds = Arrays.copyOf(rowSeeds, capacity);
+			rowScores = Arrays.copyOf(rowScores, capacity);
+			rowExerciseTs = Arrays.copyOf(rowExerciseTs, capacity);
+			rowExerciseAs = Arrays.copyOf(rowExerciseAs, capacity);
+		}
+		rowGameOffsets[numRows] = gameOffset;
+		rowTeamIDs[numRows] = teamID;
+		rowConfigIDs[numRows] = configID;
+		rowSeeds[numRows] = seed;
+		rowScores[numRows] = score;
+		rowExerciseTs[numRows] = exerciseT;
+		rowExerciseAs[numRows] = exerciseA;
+		numRows++;
+	}
+
+	private void indexRow(int row) {
+		if(row == 0 || rowGameOffsets[row] != rowGameOffsets[row - 1])
+			numGames++;
+		teamIndex.computeIfAbsent(rowTeamIDs[row], id -> new RowList()).add(row);
+		configIndex.computeIfAbsent(rowConfigIDs[row], id -> new RowList()).add(row);
+		seedIndex.computeIfAbsent(rowSeeds[row], seed -> new RowList()).add(row);
+	}
+
+	/**
+	 * Append the results of a finished game
+	 *
+	 * @param configName   configuration file of the game
+	 * @param seed         seed of the game
+	 * @param rounds       number of rounds of the game
+	 * @param granularity  granularity of the game
+	 * @param wallTime     time the game took to run in milliseconds
+	 * @param result       result of the game, whose continuations are not stored
+	 *
+	 */
+	public synchronized void append(String configName, int seed, int rounds, double granularity, long wallTime, SimulationResult result) throws IOException {
+		List<SimulationResult.OwnerResult> ownerResults = result.getOwnerResults();
+		if(ownerResults.isEmpty())
+			throw new IllegalArgumentException("A game without owners cannot be stored!");
+
+		int configID = getNameID(configName);
+		int[] teamIDs = new int[ownerResults.size()];
+		int[] ownerNameIDs = new int[ownerResults.size()];
+		int[] playerNameIDs = new int[ownerResults.size()];
+		for(int i = 0; i < ownerResults.size(); i++) {
+			teamIDs[i] = getNameID(ownerResults.get(i).getTeamName());
+			ownerNameIDs[i] = getNameID(ownerResults.get(i).getOwnerName());
+			playerNameIDs[i] = getNameID(ownerResults.get(i).getPlayerName());
+		}
+		namesOut.flush();
+
+		ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+		DataOutputStream record = new DataOutputStream(recordBytes);
+		record.writeInt(ownerResults.size());
+		record.writeInt(configID);
+		record.writeInt(seed);
+		record.writeInt(rounds);
+		record.writeDouble(granularity);
+		record.writeLong(wallTime);
+		record.writeBoolean(result.isAllExerciseCompleted());
+		for(int i = 0; i < ownerResults.size(); i++) {
+			SimulationResult.OwnerResult ownerResult = ownerResults.get(i);
+			record.writeInt(teamIDs[i]);
+			record.writeInt(ownerNameIDs[i]);
+			record.writeInt(playerNameIDs[i]);
+			record.writeDouble(ownerResult.getExerciseT());
+			record.writeDouble(ownerResult.getExerciseA());
+			record.writeDouble(ownerResult.getScore());
+			record.writeInt(ownerResult.getDogResults().size());
+			for(SimulationResult.DogResult dogResult : ownerResult.getDogResults()) {
+				record.writeByte(dogResult.getBreed().ordinal());
+				record.writeInt(dogResult.getRealID());
+				record.writeDouble(dogResult.getExerciseTimeCompleted());
+			}
+		}
+
+		long gameOffset = gamesLength;
+		gamesOut.writeInt(recordBytes.size());
+		recordBytes.writeTo(gamesOut);
+		gamesOut.flush();
+		gamesLength += 4 + recordBytes.size();
+
+		for(int i = 0; i < ownerResults.size(); i++) {
+			SimulationResult.OwnerResult ownerResult = ownerResults.get(i);
+			ownersOut.writeLong(gameOffset);
+			ownersOut.writeInt(teamIDs[i]);
+			ownersOut.writeInt(configID);
+			ownersOut.writeInt(seed);
+			ownersOut.writeDouble(ownerResult.getScore());
+			ownersOut.writeDouble(ownerResult.getExerciseT());
+			ownersOut.writeDouble(ownerResult.getExerciseA());
+			addRow(gameOffset, teamIDs[i], configID, seed, ownerResult.getScore(), ownerResult.getExerciseT(), ownerResult.getExerciseA());
+			indexRow(numRows - 1);
+		}
+		ownersOut.flush();
+	}
+
+	public synchronized int getNumGames() {
+		return numGames;
+	}
+
+	/**
+	 * Aggregate the owners of the games matching a selection
+	 *
+	 * @param teamName    team of the owners, or null for owners of any team
+	 * @param configName  configuration of the games, or null for any configuration
+	 * @param seed        seed of the games, or null for any seed
+	 *
+	 */
+	public synchronized Summary summarize(String teamName, String configName, Integer seed) {
+		Summary summary = new Summary();
+		int teamID = findNameID(teamName), configID = findNameID(configName);
+		long lastGameOffset = -1;
+		RowList rows = selectRows(teamID, configID, seed);
+		for(int i = 0; i < (rows != null ? rows.size : numRows); i++) {
+			int row = rows != null ? rows.rows[i] : i;
+			if(!matches(row, teamID, configID, seed))
+				continue;
+			if(rowGameOffsets[row] != lastGameOffset)
+				summary.numGames++;
+			lastGameOffset = rowGameOffsets[row];
+			summary.numOwners++;
+			summary.totalScore += rowScores[row];
+			summary.totalExerciseT += rowExerciseTs[row];
+			summary.totalExerciseA += rowExerciseAs[row];
+			summary.minScore = Math.min(summary.minScore, rowScores[row]);
+			summary.maxScore = Math.max(summary.maxScore, rowScores[row]);
+		}
+		return summary;
+	}
+
+	/**
+	 * Read the full records of the games matching a selection
+	 *
+	 * @param teamName    team of at least one owner, or null for games of any team
+	 * @param configName  configuration of the games, or null for any configuration
+	 * @param seed        seed of the games, or null for any seed
+	 * @return            games in the order they were appended
+	 *
+	 */
+	public synchronized List<GameRecord> find(String teamName, String configName, Integer seed) throws IOException {
+		List<GameRecord> games = new ArrayList<>();
+		int teamID = findNameID(teamName), configID = findNameID(configName);
+		long lastGameOffset = -1;
+		RowList rows = selectRows(teamID, configID, seed);
+		for(int i = 0; i < (rows != null ? rows.size : numRows); i++) {
+			int row = rows != null ? rows.rows[i] : i;
+			if(rowGameOffsets[row] == lastGameOffset || !matches(row, teamID, configID, seed))
+				continue;
+			lastGameOffset = rowGameOffsets[row];
+			games.add(readGame(lastGameOffset));
+		}
+		return games;
+	}
+
+	// The smallest of the indexes the selection uses is scanned, and the other conditions are checked on its rows
+	private RowList selectRows(int teamID, int configID, Integer seed) {
+		RowList selectedRows = null;
+		List<RowList> candidateRows = new ArrayList<>();
+		if(teamID != ANY_NAME)
+			candidateRows.add(teamIndex.getOrDefault(teamID, new RowList()));
+		if(configID != ANY_NAME)
+			candidateRows.add(configIndex.getOrDefault(configID, new RowList()));
+		if(seed != null)
+			candidateRows.add(seedIndex.getOrDefault(seed, new RowList()));
+		for(RowList rows : candidateRows)
+			if(selectedRows == null || rows.size < selectedRows.size)
+				selectedRows = rows;
+		return selectedRows;
+	}
+
+	private boolean matches(int row, int teamID, int configID, Integer seed) {
+		return (teamID == ANY_NAME || rowTeamIDs[row] == teamID) &&
+				(configID == ANY_NAME || rowConfigIDs[row] == configID) &&
+				(seed == null || rowSeeds[row] == seed);
+	}
+
+	private GameRecord readGame(long gameOffset) throws IOException {
+		gamesIn.seek(gameOffset);
+		byte[] recordBytes = new byte[gamesIn.readInt()];
+		gamesIn.readFully(recordBytes);
+		DataInputStream record = new DataInputStream(new ByteArrayInputStream(recordBytes));
+
+		int numOwners = record.readInt();
+		String configName = names.get(record.readInt());
+		int seed = record.readInt();
+		int rounds = record.readInt();
+		double granularity = record.readDouble();
+		long wallTime = record.readLong();
+		boolean allExerciseCompleted = record.readBoolean();
+		List<String> teams = new ArrayList<>();
+		List<SimulationResult.OwnerResult> ownerResults = new ArrayList<>();
+		for(int i = 0; i < numOwners; i++) {
+			teams.add(names.get(record.readInt()));
+			String ownerName = names.get(record.readInt());
+			String playerName = names.get(record.readInt());
+			double exerciseT = record.readDouble();
+			double exerciseA = record.readDouble();
+			double score = record.readDouble();
+			List<SimulationResult.DogResult> dogResults = new ArrayList<>();
+			int numDogs = record.readInt();
+			for(int j = 0; j < numDogs; j++)
+				dogResults.add(new SimulationResult.DogResult(Breed.values()[record.readByte()], record.readInt(), record.readDouble()));
+			ownerResults.add(new SimulationResult.OwnerResult(ownerName, playerName, exerciseT, exerciseA, score, dogResults));
+		}
+		return new GameRecord(teams, configName, rounds, granularity, wallTime, new SimulationResult(seed, allExerciseCompleted, ownerResults, List.of()));
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		namesOut.close();
+		gamesOut.close();
+		ownersOut.close();
+		gamesIn.close();
+		lock.release();
+		lockChannel.close();
+	}
+
+	private static class RowList {
+
+		private int[] rows = new int[16];
+		private int size = 0;
+
+		private void add(int row) {
+			if(size == rows.length)
+				rows = Arrays.copyOf(rows, 2 * size);
+			rows[size++] = row;
+		}
+	}
+
+	public static class Summary {
+
+		private int numGames = 0, numOwners = 0;
+		private double totalScore = 0, totalExerciseT = 0, totalExerciseA = 0;
+		private double minScore = Double.POSITIVE_INFINITY, maxScore = Double.NEGATIVE_INFINITY;
+
+		private Summary() {
+		}
+
+		public int getNumGames() {
+			return numGames;
+		}
+
+		public int getNumOwners() {
+			return numOwners;
+		}
+
+		public double getMeanScore() {
+			return totalScore / numOwners;
+		}
+
+		public double getMeanExerciseT() {
+			return totalExerciseT / numOwners;
+		}
+
+		public double getMeanExerciseA() {
+			return totalExerciseA / numOwners;
+		}
+
+		public double getMinScore() {
+			return minScore;
+		}
+
+		public double getMaxScore() {
+			return maxScore;
+		}
+	}
+
+	public static class GameRecord {
+
+		private final List<String> teams;
+		private final String configName;
+		private final int rounds;
+		private final double granularity;
+		private final long wallTime;
+		private final SimulationResult result;
+
+		private GameRecord(List<String> teams, String configName, int rounds, double granularity, long wallTime, SimulationResult result) {
+			this.teams = List.copyOf(teams);
+			this.configName = configName;
+			this.rounds = rounds;
+			this.granularity = granularity;
+			this.wallTime = wallTime;
+			this.result = result;
+		}
+
+		public List<String> getTeams() {
+			return teams;
+		}
+
+		public String getConfigName() {
+			return configName;
+		}
+
+		public int getSeed() {
+			return result.getSeed();
+		}
+
+		public int getRounds() {
+			return rounds;
+		}
+
+		public double getGranularity() {
+			return granularity;
+		}
+
+		public long getWallTime() {
+			return wallTime;
+		}
+
+		public SimulationResult getResult() {
+			return result;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0)
+			throw new IllegalArgumentException("The result store directory is missing!");
+		String teamName = null, configName = null;
+		Integer seed = null;
+		boolean listGames = false;
+
+		for(int i = 1; i < args.length; i++) {
+            if(args[i].equals("-n") || args[i].equals("--team")) {
+            	i++;
+                if(i == args.length)
+                    throw new IllegalArgumentException("The team is not specified!");
+                teamName = args[i];
+            }
+            else if(args[i].equals("-d") || args[i].equals("--dogs")) {
+            	i++;
+                if(i == args.length)
+                    throw new IllegalArgumentException("The configuration file is not specified!");
+                configName = args[i];
+            }
+            else if(args[i].equals("-s") || args[i].equals("--seed")) {
+            	i++;
+                if(i == args.length)
+                    throw new IllegalArgumentException("The seed is not specified!");
+                seed = Integer.parseInt(args[i]);
+            }
+            else if(args[i].equals("-g") || args[i].equals("--games"))
+                listGames = true;
+            else
+                throw new IllegalArgumentException("Unknown argument \"" + args[i] + "\"!");
+        }
+
+		try(ResultStore store = new ResultStore(args[0])) {
+			DecimalFormat decimalFormat = new DecimalFormat("######.####");
+			if(listGames) {
+				for(GameRecord game : store.find(teamName, configName, seed)) {
+					StringBuilder scores = new StringBuilder();
+					for(SimulationResult.OwnerResult ownerResult : game.getResult().getOwnerResults())
+						scores.append(", ").append(ownerResult.getPlayerName()).append(" ").append(decimalFormat.format(ownerResult.getScore()));
+					System.out.println(game.getTeams() + " on " + game.getConfigName() + " with seed " + game.getSeed() + " (" + game.getRounds() + " rounds, granularity " +
+							game.getGranularity() + ", " + game.getWallTime() + " ms)" + scores);
+				}
+			}
+
+			Summary summary = store.summarize(teamName, configName, seed);
+			System.out.println(summary.getNumOwners() + " owners in " + summary.getNumGames() + " of " + store.getNumGames() + " games");
+			if(summary.getNumOwners() > 0)
+				System.out.println("Score: mean " + decimalFormat.format(summary.getMeanScore()) + ", min " + decimalFormat.format(summary.getMinScore()) + ", max " +
+						decimalFormat.format(summary.getMaxScore()) + "; mean T " + decimalFormat.format(summary.getMeanExerciseT()) + ", mean A " + decimalFormat.format(summary.getMeanExerciseA()));
+		}
+	}
+}
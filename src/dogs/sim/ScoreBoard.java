@@ -0,0 +1,63 @@
+package dogs.sim;
+
+
+public class ScoreBoard {
+
+	private ParkState state;
+	private int rounds;
+	private long[] exerciseTs;
+	private long totalExerciseT;
+
+	/**
+	 * Live exercise scores of all owners
+	 *
+	 * T of an owner is its completion time, or the number of rounds plus twice the
+	 * exercise its dogs still need. T is kept per owner along with its sum over the
+	 * park, and both are only updated when the engine reports that an owner's dogs
+	 * exercised or that it completed, so A (the average T of the other owners) costs
+	 * O(1) per owner. T is summed in whole ticks, so the total never drifts from the
+	 * per owner values.
+	 *
+	 * @param state   park state whose owners are scored
+	 * @param rounds  number of rounds in the simulation
+	 *
+	 */
+	public ScoreBoard(ParkState state, int rounds) {
+		this.state = state;
+		this.rounds = rounds;
+		this.exerciseTs = new long[state.numOwners];
+		for(int ownerIndex = 0; ownerIndex < state.numOwners; ownerIndex++)
+			updateOwner(ownerIndex);
+	}
+
+	public void updateOwner(int ownerIndex) {
+		long exerciseT = computeExerciseT(ownerIndex);
+		totalExerciseT += exerciseT - exerciseTs[ownerIndex];
+		exerciseTs[ownerIndex] = exerciseT;
+	}
+
+	public double getExerciseT(int ownerIndex) {
+		return state.toSeconds(exerciseTs[ownerIndex]);
+	}
+
+	public double getExerciseA(int ownerIndex) {
+		if(state.numOwners == 1)
+			return 0;
+		return state.toSeconds(totalExerciseT - exerciseTs[ownerIndex]) / (state.numOwners - 1);
+	}
+
+	public double getScore(int ownerIndex) {
+		return 0.5 * (getExerciseT(ownerIndex) + getExerciseA(ownerIndex));
+	}
+
+	private long computeExerciseT(int ownerIndex) {
+		long allExerciseCompletionTicks = state.ownerCompletionTicks[ownerIndex];
+		if(allExerciseCompletionTicks != ParkState.NEVER)
+			return allExerciseCompletionTicks;
+
+		long computedExerciseT = (long) rounds * state.getTicksPerSecond();
+		for(int dogIndex : state.ownerDogs[ownerIndex])
+			computedExerciseT += state.dogExerciseTicks[dogIndex] * 2;
+		return computedExerciseT;
+	}
+}
@@ -0,0 +1,188 @@
+package dogs.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import dogs.sim.DogReference.Breed;
+
+
+public class SimulationResult {
+
+	private final int seed;
+	private final boolean allExerciseCompleted;
+	private final List<OwnerResult> ownerResults;
+	private final List<SimulationResult> continuations;
+
+	/**
+	 * Scores and exercise of a park at the end of a simulation
+	 *
+	 * @param seed                  seed of the park
+	 * @param allExerciseCompleted  whether every dog completed its exercise
+	 * @param ownerResults          results of the owners in the order of the players
+	 * @param continuations         results of the continuations forked from the park, if any
+	 *
+	 */
+	public SimulationResult(int seed, boolean allExerciseCompleted, List<OwnerResult> ownerResults, List<SimulationResult> continuations) {
+		this.seed = seed;
+		this.allExerciseCompleted = allExerciseCompleted;
+		this.ownerResults = List.copyOf(ownerResults);
+		this.continuations = List.copyOf(continuations);
+	}
+
+	public int getSeed() {
+		return seed;
+	}
+
+	public boolean isAllExerciseCompleted() {
+		return allExerciseCompleted;
+	}
+
+	public List<OwnerResult> getOwnerResults() {
+		return ownerResults;
+	}
+
+	public List<SimulationResult> getContinuations() {
+		return continuations;
+	}
+
+	// Doubles are written with all their digits, so a result read back from JSON is identical to the one written
+	public JSONObject toJSON() throws JSONException {
+		JSONArray ownerResultsJSON = new JSONArray();
+		for(OwnerResult ownerResult : ownerResults) {
+			JSONArray dogResultsJSON = new JSONArray();
+			for(DogResult dogResult : ownerResult.dogResults) {
+				JSONObject dogResultJSON = new JSONObject();
+				dogResultJSON.put("breed", dogResult.breed.name());
+				dogResultJSON.put("realID", dogResult.realID);
+				dogResultJSON.put("exerciseTimeCompleted", dogResult.exerciseTimeCompleted);
+				dogResultsJSON.put(dogResultJSON);
+			}
+			JSONObject ownerResultJSON = new JSONObject();
+			ownerResultJSON.put("ownerName", ownerResult.ownerName);
+			ownerResultJSON.put("playerName", ownerResult.playerName);
+			ownerResultJSON.put("exerciseT", ownerResult.exerciseT);
+			ownerResultJSON.put("exerciseA", ownerResult.exerciseA);
+			ownerResultJSON.put("score", ownerResult.score);
+			ownerResultJSON.put("dogResults", dogResultsJSON);
+			ownerResultsJSON.put(ownerResultJSON);
+		}
+		JSONArray continuationsJSON = new JSONArray();
+		for(SimulationResult continuation : continuations)
+			continuationsJSON.put(continuation.toJSON());
+
+		JSONObject resultJSON = new JSONObject();
+		resultJSON.put("seed", seed);
+		resultJSON.put("allExerciseCompleted", allExerciseCompleted);
+		resultJSON.put("ownerResults", ownerResultsJSON);
+		resultJSON.put("continuations", continuationsJSON);
+		return resultJSON;
+	}
+
+	public static SimulationResult fromJSON(JSONObject resultJSON) throws JSONException {
+		List<OwnerResult> ownerResults = new ArrayList<>();
+		JSONArray ownerResultsJSON = resultJSON.getJSONArray("ownerResults");
+		for(int i = 0; i < ownerResultsJSON.length(); i++) {
+			JSONObject ownerResultJSON = ownerResultsJSON.getJSONObject(i);
+			List<DogResult> dogResults = new ArrayList<>();
+			JSONArray dogResultsJSON = ownerResultJSON.getJSONArray("dogResults");
+			for(int j = 0; j < dogResultsJSON.length(); j++) {
+				JSONObject dogResultJSON = dogResultsJSON.getJSONObject(j);
+				dogResults.add(new DogResult(Breed.valueOf(dogResultJSON.getString("breed")), dogResultJSON.getInt("realID"), dogResultJSON.getDouble("exerciseTimeCompleted")));
+			}
+			ownerResults.add(new OwnerResult(ownerResultJSON.getString("ownerName"), ownerResultJSON.getString("playerName"),
+					ownerResultJSON.getDouble("exerciseT"), ownerResultJSON.getDouble("exerciseA"), ownerResultJSON.getDouble("score"), dogResults));
+		}
+		List<SimulationResult> continuations = new ArrayList<>();
+		JSONArray continuationsJSON = resultJSON.getJSONArray("continuations");
+		for(int i = 0; i < continuationsJSON.length(); i++)
+			continuations.add(fromJSON(continuationsJSON.getJSONObject(i)));
+		return new SimulationResult(resultJSON.getInt("seed"), resultJSON.getBoolean("allExerciseCompleted"), ownerResults, continuations);
+	}
+
+	public static class OwnerResult {
+
+		private final String ownerName;
+		private final String playerName;
+		private final double exerciseT, exerciseA, score;
+		private final List<DogResult> dogResults;
+
+		/**
+		 * Score of an owner at the end of a simulation
+		 *
+		 * @param ownerName   name of the owner
+		 * @param playerName  name of the player deciding for the owner
+		 * @param exerciseT   T of the owner in seconds
+		 * @param exerciseA   A of the owner in seconds
+		 * @param score       score of the owner in seconds
+		 * @param dogResults  exercise of the owner's dogs
+		 *
+		 */
+		public OwnerResult(String ownerName, String playerName, double exerciseT, double exerciseA, double score, List<DogResult> dogResults) {
+			this.ownerName = ownerName;
+			this.playerName = playerName;
+			this.exerciseT = exerciseT;
+			this.exerciseA = exerciseA;
+			this.score = score;
+			this.dogResults = List.copyOf(dogResults);
+		}
+
+		public String getOwnerName() {
+			return ownerName;
+		}
+
+		public String getPlayerName() {
+			return playerName;
+		}
+
+		// Owners of the same team are told apart by a number after the name of the team
+		public String getTeamName() {
+			int index = playerName.lastIndexOf("_");
+			return index < 0 ? playerName : playerName.substring(0, index);
+		}
+
+		public double getExerciseT() {
+			return exerciseT;
+		}
+
+		public double getExerciseA() {
+			return exerciseA;
+		}
+
+		public double getScore() {
+			return score;
+		}
+
+		public List<DogResult> getDogResults() {
+			return dogResults;
+		}
+	}
+
+	public static class DogResult {
+
+		private final Breed breed;
+		private final int realID;
+		private final double exerciseTimeCompleted;
+
+		public DogResult(Breed breed, int realID, double exerciseTimeCompleted) {
+			this.breed = breed;
+			this.realID = realID;
+			this.exerciseTimeCompleted = exerciseTimeCompleted;
+		}
+
+		public Breed getBreed() {
+			return breed;
+		}
+
+		public int getRealID() {
+			return realID;
+		}
+
+		public double getExerciseTimeCompleted() {
+			return exerciseTimeCompleted;
+		}
+	}
+}
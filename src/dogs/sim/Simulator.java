@@ -11,11 +11,19 @@ package dogs.sim;
 
 import java.awt.Desktop;
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.tools.JavaCompiler;
 import javax.tools.StandardJavaFileManager;
@@ -33,54 +41,290 @@ import dogs.sim.Owner.OwnerName;
 public class Simulator {
 	
 	// Simulator structures
-	private static String configName;
-	private static List<PlayerWrapper> playerWrappers;
-	private static List<String> playerNames;
-	private static Map<PlayerWrapper, Owner> playerWrapperToOwnerMap;
-	private static Map<Owner, PlayerWrapper> ownerToPlayerWrapperMap;
-	private static List<Owner> allOwners;
-	private static List<Dog> allDogs;
-	private static List<Ball> allBalls;
-	private static Map<Dog, Ball> dogToBallMap;
-	private static Random random;
+	private String configName;
+	private List<String> playerNames = new ArrayList<>();
+	private List<String> forkPlayerNames = new ArrayList<>();
+	private List<ParkInstance> parks;
+	private boolean started = false;
+	private Log log;
 	
 	// Simulator inputs
-	private static int seed = 42;
-	private static int rounds = 3600;
-	private static int numDogsPerOwner = 1;
-	private static int numOwners = 5;
-	private static int inverseGranularity = 100;
-	private static double fps = 30;
-	private static boolean showGUI = false;
+	private int seed = 42;
+	private int rounds = 3600;
+	private int numDogsPerOwner = 1;
+	private int numOwners = 5;
+	private int inverseGranularity = 100;
+	private int numThreads = 1;
+	private int batchSize = 1;
+	private String checkpointPath = null;
+	private int checkpointInterval = 100;
+	private String resumePath = null;
+	private int forkRound = 0;
+	private int numForks = 4;
+	private ParkEngine.Mode engineMode = ParkEngine.Mode.FIXED;
+	private boolean concurrentDecisions = false;
+	private boolean referenceTracking = false;
+	private boolean allocationTracking = false;
+	private boolean vectorizedProximity = false;
+	private boolean doubleBuffered = false;
+	private double fps = 30;
+	private boolean showGUI = false;
+	private String logPath = null;
+	private boolean verbose = false;
+	private ResultStore resultStore = null;
+	private ResultCache resultCache = null;
 
 	// Defaults
 	private static double dataError = 1e-7;
 	private static boolean enablePrints = false;
 	private static long timeout = 1000;
-	private static int currentStep = 0;
 	private static String version = "1.0";
-	private static String projectPath, sourcePath, staticsPath;
+	private static final int CHECKPOINT_MAGIC = 0x444F4753;
+	private static final int CHECKPOINT_VERSION = 1;
+	private String projectPath, sourcePath, staticsPath;
+	
+	// Compiled players and their class files are shared by all simulations in the process
+	private static final Set<String> checkedPlayerPackages = new HashSet<>();
+	private static final Map<String, byte[]> playerClassBytes = new ConcurrentHashMap<>();
     
-
-	private static void setup() {
-		random = new Random(seed);
-		projectPath = new File(".").getAbsolutePath().substring(0, 
+	private Simulator() {
+		setProjectPath(getDefaultProjectPath());
+	}
+	
+	static String getDefaultProjectPath() {
+		return new File(".").getAbsolutePath().substring(0, 
 				new File(".").getAbsolutePath().indexOf("coms4444-dogs") + "coms4444-dogs".length());
+	}
+	
+	private void setProjectPath(String projectPath) {
+		this.projectPath = projectPath;
 		sourcePath = projectPath + File.separator + "src";
 		staticsPath = projectPath + File.separator + "statics";
 	}
-
-	private static void parseCommandLineArguments(String[] args) throws IOException {
-		playerWrappers = new ArrayList<>();
-		playerNames = new ArrayList<>();
-		allOwners = new ArrayList<>();
-		allDogs = new ArrayList<>();
-		allBalls = new ArrayList<>();
-		playerWrapperToOwnerMap = new HashMap<>();
-		ownerToPlayerWrapperMap = new HashMap<>();
-		dogToBallMap = new HashMap<>();
+	
+	public static class Builder {
+		
+		private final Simulator simulator = new Simulator();
+		
+		/**
+		 * Builder of a simulation that can run alongside others in the same process
+		 *
+		 * Settings left unset keep the defaults of the command line. Every simulation
+		 * loads its own players, so static fields of a player are never shared between
+		 * simulations, and every simulation writes to its own log.
+		 *
+		 */
+		public Builder() {
+		}
+		
+		public Builder setOwners(List<String> players) {
+			simulator.playerNames = getPlayerNames(players);
+			simulator.numOwners = players.size();
+			return this;
+		}
+		
+		public Builder setDogConfig(String configName) {
+			simulator.configName = configName;
+			return this;
+		}
+		
+		public Builder setSeed(int seed) {
+			simulator.seed = seed;
+			return this;
+		}
+		
+		public Builder setRounds(int rounds) {
+			simulator.rounds = rounds;
+			return this;
+		}
+		
+		public Builder setGranularity(double granularity) {
+			if(granularity == 0.0)
+				throw new IllegalArgumentException("The simulation granularity must be nonzero!");
+			simulator.inverseGranularity = (int) (1.0 / granularity);
+			return this;
+		}
+		
+		public Builder setThreads(int numThreads) {
+			if(numThreads < 1)
+				throw new IllegalArgumentException("The number of simulation threads must be positive!");
+			simulator.numThreads = numThreads;
+			return this;
+		}
+		
+		public Builder setBatchSize(int batchSize) {
+			if(batchSize < 1)
+				throw new IllegalArgumentException("The number of parks in the batch must be positive!");
+			simulator.batchSize = batchSize;
+			return this;
+		}
+		
+		public Builder setCheckpointPath(String checkpointPath) {
+			simulator.checkpointPath = checkpointPath;
+			return this;
+		}
+		
+		public Builder setCheckpointInterval(int checkpointInterval) {
+			if(checkpointInterval < 1)
+				throw new IllegalArgumentException("The number of rounds between checkpoints must be positive!");
+			simulator.checkpointInterval = checkpointInterval;
+			return this;
+		}
+		
+		public Builder setResumePath(String resumePath) {
+			simulator.resumePath = resumePath;
+			return this;
+		}
+		
+		public Builder setForkRound(int forkRound) {
+			if(forkRound < 1)
+				throw new IllegalArgumentException("The round to fork the park after must be positive!");
+			simulator.forkRound = forkRound;
+			return this;
+		}
+		
+		public Builder setNumForks(int numForks) {
+			if(numForks < 1)
+				throw new IllegalArgumentException("The number of continuations must be positive!");
+			simulator.numForks = numForks;
+			return this;
+		}
+		
+		public Builder setForkOwners(List<String> players) {
+			simulator.forkPlayerNames = getPlayerNames(players);
+			return this;
+		}
+		
+		public Builder setEngineMode(ParkEngine.Mode engineMode) {
+			simulator.engineMode = engineMode;
+			return this;
+		}
+		
+		public Builder setConcurrentDecisions(boolean concurrentDecisions) {
+			simulator.concurrentDecisions = concurrentDecisions;
+			return this;
+		}
+		
+		public Builder setReferenceTracking(boolean referenceTracking) {
+			simulator.referenceTracking = referenceTracking;
+			return this;
+		}
+		
+		public Builder setAllocationTracking(boolean allocationTracking) {
+			simulator.allocationTracking = allocationTracking;
+			return this;
+		}
+		
+		public Builder setVectorizedProximity(boolean vectorizedProximity) {
+			simulator.vectorizedProximity = vectorizedProximity;
+			return this;
+		}
+		
+		public Builder setDoubleBuffered(boolean doubleBuffered) {
+			simulator.doubleBuffered = doubleBuffered;
+			return this;
+		}
 		
+		public Builder setResultStore(ResultStore resultStore) {
+			simulator.resultStore = resultStore;
+			return this;
+		}
+		
+		public Builder setResultCache(ResultCache resultCache) {
+			simulator.resultCache = resultCache;
+			return this;
+		}
+		
+		public Builder setGUI(boolean showGUI) {
+			simulator.showGUI = showGUI;
+			return this;
+		}
+		
+		public Builder setLogPath(String logPath) {
+			simulator.logPath = logPath;
+			return this;
+		}
+		
+		public Builder setVerbose(boolean verbose) {
+			simulator.verbose = verbose;
+			return this;
+		}
+		
+		public Builder setFPS(double fps) {
+			simulator.fps = fps;
+			return this;
+		}
+		
+		public Builder setProjectPath(String projectPath) {
+			simulator.setProjectPath(projectPath);
+			return this;
+		}
+		
+		/**
+		 * Check the settings and load the configuration and players of every park
+		 *
+		 * @return  simulation ready to run, which a builder only builds once
+		 *
+		 */
+		public Simulator build() throws IOException {
+			if(simulator.parks != null)
+				throw new IllegalStateException("The simulation has already been built!");
+			if(simulator.configName == null)
+				throw new IOException("You must specify a configuration file.");
+			if(simulator.showGUI && simulator.batchSize > 1)
+				throw new IllegalArgumentException("The GUI can only show a single park!");
+			if(simulator.forkRound > 0 && simulator.batchSize > 1)
+				throw new IllegalArgumentException("Only a single park can be forked!");
+			if(simulator.referenceTracking && simulator.resumePath != null)
+				throw new IllegalArgumentException("The accuracy report needs the whole run and cannot be combined with resuming!");
+			if(!simulator.forkPlayerNames.isEmpty() && simulator.forkPlayerNames.size() != simulator.playerNames.size())
+				throw new IllegalArgumentException("The continuations must have as many owners as the park!");
+			if(simulator.forkPlayerNames.isEmpty())
+				simulator.forkPlayerNames = simulator.playerNames;
+
+			simulator.log = new Log(simulator.logPath, simulator.verbose);
+
+			// The dictionary is read before any player is timed, since reading it can take longer than a decision is given
+			if(!Dictionary.load())
+				simulator.log.writeToLogFile("Cannot read dictionary file!");
+
+			List<ParkInstance> parks = new ArrayList<>();
+			for(int i = 0; i < simulator.batchSize; i++)
+				parks.add(simulator.new ParkInstance(simulator.seed + i));
+			simulator.parks = parks;
+			if(simulator.referenceTracking && (simulator.engineMode == ParkEngine.Mode.ADAPTIVE || simulator.doubleBuffered))
+				for(ParkInstance park : parks)
+					park.reference = simulator.new ParkInstance(park.seed, true);
+			
+			simulator.log.writeToLogFile("\n");
+	        simulator.log.writeToLogFile("Project: Exercising the Dogs");
+	        simulator.log.writeToLogFile("Simulator Version: " + version);
+	        simulator.log.writeToLogFile("Players: " + simulator.playerNames.toString());
+	        simulator.log.writeToLogFile("GUI: " + (simulator.showGUI ? "enabled" : "disabled"));
+	        if(simulator.batchSize > 1)
+	            simulator.log.writeToLogFile("Seeds: " + simulator.seed + " to " + (simulator.seed + simulator.batchSize - 1));
+	        simulator.log.writeToLogFile("\n");
+			return simulator;
+		}
+	}
+	
+	// Owners of the same team are told apart by a number
+	private static List<String> getPlayerNames(List<String> teams) {
+		List<String> playerNames = new ArrayList<>();
 		Map<String, Integer> playerNameMap = new HashMap<>();
+		for(String playerName : teams) {
+			if(!playerNameMap.containsKey(playerName))
+				playerNameMap.put(playerName, 0);
+			playerNameMap.put(playerName, playerNameMap.get(playerName) + 1);
+			playerNames.add(playerName + "_" + playerNameMap.get(playerName));
+		}
+		return playerNames;
+	}
+	
+	private static Builder parseCommandLineArguments(String[] args) throws IOException {
+		Builder builder = new Builder();
+		List<String> owners = new ArrayList<>();
+		List<String> forkOwners = new ArrayList<>();
 
 		for(int i = 0; i < args.length; i++) {
             switch (args[i].charAt(0)) {
@@ -88,57 +332,130 @@ public class Simulator {
                     if(args[i].equals("-n") || args[i].equals("--owners")) {
                         while(i + 1 < args.length && args[i + 1].charAt(0) != '-') {
                             i++;
-                            String playerName = args[i];
-                            if(!playerNameMap.containsKey(playerName))
-                            	playerNameMap.put(playerName, 0);
-                            playerNameMap.put(playerName, playerNameMap.get(playerName) + 1);
-                            playerNames.add(playerName + "_" + playerNameMap.get(playerName));
+                            owners.add(args[i]);
                         }
-                        numOwners = playerNames.size();
+                        builder.setOwners(owners);
                     }
                     else if(args[i].equals("-d") || args[i].equals("--dogs")) {
                     	i++;
                         if(i == args.length) 
                             throw new IllegalArgumentException("The dog configuration file is missing!");
-                        configName = args[i];
+                        builder.setDogConfig(args[i]);
                     }
                     else if(args[i].equals("-g") || args[i].equals("--gui"))
-                        showGUI = true;
+                        builder.setGUI(true);
                     else if(args[i].equals("-l") || args[i].equals("--log")) {
                         i++;
                     	if(i == args.length) 
                             throw new IllegalArgumentException("The log file path is missing!");
-                        Log.setLogFile(args[i]);
-                        Log.assignLoggingStatus(true);
+                        builder.setLogPath(args[i]);
                     }
                     else if(args[i].equals("-v") || args[i].equals("--verbose"))
-                        Log.assignVerbosityStatus(true);
+                        builder.setVerbose(true);
                     else if(args[i].equals("-f") || args[i].equals("--fps")) {
                     	i++;
                         if(i == args.length)
                             throw new IllegalArgumentException("The GUI frames per second is missing!");
-                        fps = Double.parseDouble(args[i]);
+                        builder.setFPS(Double.parseDouble(args[i]));
                     }
                     else if(args[i].equals("-y") || args[i].equals("--granularity")) {
                     	i++;
                         if(i == args.length)
                             throw new IllegalArgumentException("The simulation granularity is not specified!");
-                        if(Double.parseDouble(args[i]) == 0.0)
-                            throw new IllegalArgumentException("The simulation granularity must be nonzero!");                        	
-                        inverseGranularity = (int) (1.0 / Double.parseDouble(args[i]));
+                        builder.setGranularity(Double.parseDouble(args[i]));
+                    }
+                    else if(args[i].equals("-t") || args[i].equals("--threads")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The number of simulation threads is not specified!");
+                        builder.setThreads(Integer.parseInt(args[i]));
+                    }
+                    else if(args[i].equals("-z") || args[i].equals("--batch")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The number of parks in the batch is not specified!");
+                        builder.setBatchSize(Integer.parseInt(args[i]));
                     }
+                    else if(args[i].equals("-o") || args[i].equals("--checkpoint")) {
+                        i++;
+                    	if(i == args.length) 
+                            throw new IllegalArgumentException("The checkpoint file path is missing!");
+                        builder.setCheckpointPath(args[i]);
+                    }
+                    else if(args[i].equals("-i") || args[i].equals("--checkpoint-interval")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The number of rounds between checkpoints is not specified!");
+                        builder.setCheckpointInterval(Integer.parseInt(args[i]));
+                    }
+                    else if(args[i].equals("-u") || args[i].equals("--resume")) {
+                        i++;
+                    	if(i == args.length) 
+                            throw new IllegalArgumentException("The checkpoint file path to resume from is missing!");
+                        builder.setResumePath(args[i]);
+                    }
+                    else if(args[i].equals("-x") || args[i].equals("--fork")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The round to fork the park after is not specified!");
+                        builder.setForkRound(Integer.parseInt(args[i]));
+                    }
+                    else if(args[i].equals("-w") || args[i].equals("--forks")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The number of continuations is not specified!");
+                        builder.setNumForks(Integer.parseInt(args[i]));
+                    }
+                    else if(args[i].equals("-j") || args[i].equals("--fork-owners")) {
+                        while(i + 1 < args.length && args[i + 1].charAt(0) != '-') {
+                            i++;
+                            forkOwners.add(args[i]);
+                        }
+                        builder.setForkOwners(forkOwners);
+                    }
+                    else if(args[i].equals("-q") || args[i].equals("--store")) {
+                        i++;
+                    	if(i == args.length) 
+                            throw new IllegalArgumentException("The result store path is missing!");
+                        builder.setResultStore(new ResultStore(args[i]));
+                    }
+                    else if(args[i].equals("-p") || args[i].equals("--cache")) {
+                        i++;
+                    	if(i == args.length) 
+                            throw new IllegalArgumentException("The result cache path is missing!");
+                        builder.setResultCache(new ResultCache(args[i]));
+                    }
+                    else if(args[i].equals("-e") || args[i].equals("--engine")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The simulation engine is not specified!");
+                        try {
+                            builder.setEngineMode(ParkEngine.Mode.valueOf(args[i].toUpperCase()));
+                        } catch(IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Unknown simulation engine \"" + args[i] + "\"!");
+                        }
+                    }
+                    else if(args[i].equals("-a") || args[i].equals("--accuracy"))
+                        builder.setReferenceTracking(true);
+                    else if(args[i].equals("-m") || args[i].equals("--allocations"))
+                        builder.setAllocationTracking(true);
+                    else if(args[i].equals("-b") || args[i].equals("--double-buffered"))
+                        builder.setDoubleBuffered(true);
+                    else if(args[i].equals("-k") || args[i].equals("--simd"))
+                        builder.setVectorizedProximity(true);
+                    else if(args[i].equals("-c") || args[i].equals("--concurrent"))
+                        builder.setConcurrentDecisions(true);
                     else if(args[i].equals("-s") || args[i].equals("--seed")) {
                     	i++;
                         if(i == args.length) 
                             throw new IllegalArgumentException("The seed number is missing!");
-                        seed = Integer.parseInt(args[i]);
-                        random = new Random(seed);
+                        builder.setSeed(Integer.parseInt(args[i]));
                     }
                     else if(args[i].equals("-r") || args[i].equals("--rounds")) {
                     	i++;
                         if(i == args.length)
                             throw new IllegalArgumentException("The number of rounds is not specified!");
-                        rounds = Integer.parseInt(args[i]);
+                        builder.setRounds(Integer.parseInt(args[i]));
                     }
                     else
                         throw new IllegalArgumentException("Unknown argument \"" + args[i] + "\"!");
@@ -148,10 +465,327 @@ public class Simulator {
             }
         }
 
+		return builder;
+	}
+	
+	/**
+	 * Run the simulation to the end
+	 *
+	 * @return  result of the park, or of the first park of a batch
+	 *
+	 */
+	public SimulationResult run() throws IOException, JSONException {
+		return runBatch().get(0);
+	}
+	
+	/**
+	 * Run every park of the simulation to the end
+	 *
+	 * A simulation runs once, and its results are logged as well as returned.
+	 *
+	 * @return  results of the parks in the order of their seeds
+	 *
+	 */
+	public List<SimulationResult> runBatch() throws IOException, JSONException {
+		if(started)
+			throw new IllegalStateException("The simulation has already been run!");
+		started = true;
+		long startTime = System.currentTimeMillis();
+		
+		// A batch is only skipped when every one of its parks is in the cache, and concurrent decisions depend on timing so they are never cached
+		List<String> cacheKeys = new ArrayList<>();
+		if(resultCache != null && !showGUI && forkRound == 0 && checkpointPath == null && resumePath == null && !concurrentDecisions) {
+			List<SimulationResult> cachedResults = new ArrayList<>();
+			for(ParkInstance park : parks) {
+				String cacheKey = getCacheKey(park.seed);
+				cacheKeys.add(cacheKey);
+				SimulationResult cachedResult = resultCache.get(cacheKey);
+				if(cachedResult != null)
+					cachedResults.add(cachedResult);
+			}
+			if(cachedResults.size() == parks.size()) {
+				for(SimulationResult cachedResult : cachedResults) {
+					if(batchSize > 1)
+						log.writeToLogFile("Park with seed " + cachedResult.getSeed() + ":");
+					log.writeToLogFile("The results of the park were found in the result cache.");
+					logResults(cachedResult);
+				}
+				finishBatch(cachedResults, startTime);
+				return cachedResults;
+			}
+		}
+		
+		HTTPServer server = null;
+		if(showGUI) {
+            server = new HTTPServer();
+            log.writeToLogFile("Hosting the HTTP Server on " + server.addr());
+            if(!Desktop.isDesktopSupported())
+                log.writeToLogFile("Desktop operations not supported!");
+            else if(!Desktop.getDesktop().isSupported(Desktop.Action.BROWSE))
+                log.writeToLogFile("Desktop browse operation not supported!");
+            else {
+                try {
+                    Desktop.getDesktop().browse(new URI("http://localhost:" + server.port()));
+                } catch(URISyntaxException e) {}
+            }
+        }
+		
+		ProximityKernel proximityKernel = vectorizedProximity ? ProximityKernel.loadVectorized(log) : null;
+		for(ParkInstance park : parks) {
+			park.startEngine(proximityKernel);
+			if(park.reference != null)
+				park.reference.startEngine(proximityKernel);
+		}
+		int lastRound = resumePath != null ? readCheckpoint() : 0;
+
+	    if(showGUI)
+			updateGUI(server, parks.get(0).getGUIState(0));
+		
+		com.sun.management.ThreadMXBean threadMXBean = allocationTracking ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+		long stepAllocatedBytes = 0;
+
+		List<ParkInstance> forks = new ArrayList<>();
+		List<Future<?>> forkRuns = new ArrayList<>();
+		ExecutorService forkPool = null;
+
+		boolean allExerciseCompleted = true;
+		for(ParkInstance park : parks)
+			allExerciseCompleted &= park.allExerciseCompleted;
+		for(int round = lastRound + 1; round <= rounds && !allExerciseCompleted; round++) {
+			for(ParkInstance park : parks)
+				if(!park.allExerciseCompleted)
+					park.startRound(round);
+			
+			// Parks take turns advancing, so that each one moves on by a single engine advance at a time
+			boolean roundRunning = true;
+			while(roundRunning) {
+				roundRunning = false;
+				for(ParkInstance park : parks) {
+					if(!park.isRoundRunning(round))
+						continue;
+					long allocatedBytesBefore = allocationTracking ? threadMXBean.getCurrentThreadAllocatedBytes() : 0;
+					park.advance();
+					if(allocationTracking)
+						stepAllocatedBytes += threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBytesBefore;
+					roundRunning |= park.isRoundRunning(round);
+				}
+			}
+			for(ParkInstance park : parks)
+				if(park.reference != null)
+					park.runReferenceRound(round);
+			
+			allExerciseCompleted = true;
+			for(ParkInstance park : parks)
+				allExerciseCompleted &= park.allExerciseCompleted;
+			if(checkpointPath != null && round % checkpointInterval == 0)
+				writeCheckpoint(round);
+			if(round == forkRound && !allExerciseCompleted) {
+				forkPool = Executors.newFixedThreadPool(Math.min(numForks, Runtime.getRuntime().availableProcessors()));
+				int firstForkRound = round + 1;
+				for(int forkIndex = 1; forkIndex <= numForks; forkIndex++) {
+					ParkInstance fork = new ParkInstance(parks.get(0), forkIndex);
+					forks.add(fork);
+					forkRuns.add(forkPool.submit(() -> fork.runRounds(firstForkRound)));
+				}
+				log.writeToLogFile("Forked " + numForks + " continuations of the park after round " + round + ".");
+			}
+		    if(showGUI && !allExerciseCompleted)
+				updateGUI(server, parks.get(0).getGUIState(round));
+		}
+		
+		for(Future<?> forkRun : forkRuns) {
+			try {
+				forkRun.get();
+			} catch(InterruptedException | ExecutionException e) {
+				throw new IllegalStateException("A continuation of the park failed!", e);
+			}
+		}
+		if(forkPool != null)
+			forkPool.shutdown();
+		for(ParkInstance park : parks)
+			if(park.reference != null)
+				park.finishReference();
+		for(ParkInstance park : parks)
+			park.parkEngine.shutdown();
+		for(ParkInstance fork : forks)
+			fork.parkEngine.shutdown();
+		if(allocationTracking)
+			log.writeToLogFile("The simulator thread allocated " + stepAllocatedBytes + " bytes while advancing the park" + (batchSize > 1 ? "s" : "") + ".");
+		
+	    if(showGUI)
+			updateGUI(server, parks.get(0).getGUIState(parks.get(0).lastStep / inverseGranularity));
+
+		for(ParkInstance park : parks) {
+			if(batchSize > 1)
+				log.writeToLogFile("Park with seed " + park.seed + ":");
+			park.logResults();
+		}
+		for(int forkIndex = 1; forkIndex <= forks.size(); forkIndex++) {
+			log.writeToLogFile("Continuation " + forkIndex + " after round " + forkRound + ":");
+			forks.get(forkIndex - 1).logResults();
+		}
+		
+		List<SimulationResult> results = new ArrayList<>();
+		for(ParkInstance park : parks)
+			results.add(park.getResult(park == parks.get(0) ? forks : List.of()));
+		for(int i = 0; i < cacheKeys.size(); i++) {
+			try {
+				resultCache.put(cacheKeys.get(i), results.get(i));
+			} catch(IOException e) {
+				log.writeToLogFile("Cannot write to the result cache: " + e.getMessage());
+			}
+		}
+		finishBatch(results, startTime);
+		return results;
+	}
+	
+	// Parks of a batch run together, so each of them is stored with the time of the whole batch, and the simulation logs nothing after it
+	private void finishBatch(List<SimulationResult> results, long startTime) throws IOException {
+		if(resultStore != null)
+			for(SimulationResult result : results)
+				resultStore.append(configName, result.getSeed(), rounds, 1.0 / inverseGranularity, System.currentTimeMillis() - startTime, result);
+		log.closeLogFile();
+	}
+	
+	/**
+	 * Key of a park in the result cache
+	 *
+	 * The key covers the settings that change the results of a park, the contents of
+	 * the configuration, every file in the packages of the teams playing, including
+	 * their class files, and the sources of the simulator. Settings that leave the
+	 * results unchanged, such as the number of threads, are left out, and runs with
+	 * concurrent decisions are never cached.
+	 *
+	 * @param seed  seed of the park
+	 * @return      hexadecimal SHA-256 digest
+	 *
+	 */
+	private String getCacheKey(int seed) throws IOException {
+		ResultCache.KeyBuilder key = new ResultCache.KeyBuilder();
+		key.add(version).add(seed).add(rounds).add(inverseGranularity).add(engineMode.name())
+				.add(doubleBuffered ? 1 : 0).add(timeout);
+		key.add(playerNames.size());
+		for(String playerName : playerNames)
+			key.add(playerName);
+		
+		File sourceDirectory = new File(sourcePath);
+		key.addFiles(sourceDirectory, List.of(new File(sourcePath + File.separator + "configs" + File.separator + configName)));
+		for(String teamName : new TreeSet<>(playerNames.stream().map(Simulator::cleanName).toList()))
+			key.addFiles(sourceDirectory, getFilesInDirectory(sourcePath + File.separator + "dogs" + File.separator + teamName, ""));
+		key.addFiles(sourceDirectory, getFilesInDirectory(sourcePath + File.separator + "dogs" + File.separator + "sim", ".java"));
+		return key.build();
+	}
+	
+	/**
+	 * Write the state of all parks at the end of a round
+	 *
+	 * The checkpoint is written next to its path first and then moved over it, so
+	 * that an interrupted write never leaves a broken checkpoint behind.
+	 *
+	 * @param round  round that just ended
+	 *
+	 */
+	private void writeCheckpoint(int round) throws IOException {
+		File checkpointFile = new File(checkpointPath);
+		File partialFile = new File(checkpointPath + ".partial");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partialFile)))) {
+			out.writeInt(CHECKPOINT_MAGIC);
+			out.writeInt(CHECKPOINT_VERSION);
+			writeCheckpointSettings(out);
+			out.writeInt(round);
+			for(ParkInstance park : parks)
+				park.writeCheckpoint(out);
+		}
+		Files.move(partialFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		log.writeToLogFile("Checkpoint of round " + round + " written to " + checkpointPath + ".");
+	}
+	
+	/**
+	 * Restore all parks from a checkpoint taken with the same settings
+	 *
+	 * Players are created again from scratch, so only players that keep no state
+	 * of their own across rounds continue exactly as they would have.
+	 *
+	 * @return  round at the end of which the checkpoint was taken
+	 *
+	 */
+	private int readCheckpoint() throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(resumePath)))) {
+			if(in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION)
+				throw new IOException("The file " + resumePath + " is not a checkpoint of this simulator version!");
+			ByteArrayOutputStream settings = new ByteArrayOutputStream();
+			writeCheckpointSettings(new DataOutputStream(settings));
+			byte[] checkpointSettings = new byte[settings.size()];
+			in.readFully(checkpointSettings);
+			if(!Arrays.equals(checkpointSettings, settings.toByteArray()))
+				throw new IOException("The checkpoint was taken with different settings!");
+			int round = in.readInt();
+			for(ParkInstance park : parks)
+				park.readCheckpoint(in);
+			log.writeToLogFile("Resuming after round " + round + " from " + resumePath + ".");
+			return round;
+		}
+	}
+	
+	// Settings that change the results have to be the same when resuming
+	private void writeCheckpointSettings(DataOutputStream out) throws IOException {
+		out.writeUTF(configName);
+		out.writeUTF(String.join(" ", playerNames));
+		out.writeInt(seed);
+		out.writeInt(batchSize);
+		out.writeInt(rounds);
+		out.writeInt(inverseGranularity);
+		out.writeUTF(engineMode.name());
+		out.writeBoolean(concurrentDecisions);
+		out.writeBoolean(doubleBuffered);
+		out.flush();
+	}
+	
+	private class ParkInstance {
 		
-		if(configName == null)
-			throw new IOException("You must specify a configuration file.");
-		else {
+		private final int seed;
+		private final RestorableRandom random;
+		private final List<RestorableRandom> playerRandoms = new ArrayList<>();
+		private final List<PlayerWrapper> playerWrappers = new ArrayList<>();
+		private final Map<String, ClassLoader> playerClassLoaders = new HashMap<>();
+		private final Map<PlayerWrapper, Owner> playerWrapperToOwnerMap = new HashMap<>();
+		private final Map<Owner, PlayerWrapper> ownerToPlayerWrapperMap = new HashMap<>();
+		private final List<Owner> allOwners = new ArrayList<>();
+		private final List<Dog> allDogs = new ArrayList<>();
+		private final List<Ball> allBalls = new ArrayList<>();
+		private final List<Owner> ownersThatExitedPark = new ArrayList<>();
+		private final ParkState parkState;
+		private final boolean fixedStepReference;
+		private ParkEngine parkEngine;
+		private ScoreBoard scoreBoard;
+		private int lastStep = 0;
+		private boolean allExerciseCompleted = false;
+		private ParkInstance reference;
+		private double maxReferenceLocationError, maxReferenceExerciseTimeError, maxReferenceScoreError;
+		
+		ParkInstance(int seed) throws IOException {
+			this(seed, false);
+		}
+		
+		/**
+		 * Park simulated with its own seed, players and engine
+		 *
+		 * Parks of a batch share the configuration and the settings, and everything a
+		 * park changes while it runs, including the state its players keep, belongs to
+		 * the park alone, so that a park of a batch runs as it would on its own. A
+		 * fixed-step reference runs as a separate run with fixed sub-steps in the legacy
+		 * order would, whatever the engine settings of the simulation.
+		 *
+		 * @param seed                seed of the park's random generator and players
+		 * @param fixedStepReference  whether the park is the fixed-step reference of another
+		 *
+		 */
+		ParkInstance(int seed, boolean fixedStepReference) throws IOException {
+			this.seed = seed;
+			this.fixedStepReference = fixedStepReference;
+			this.random = new RestorableRandom(seed);
+			this.parkState = new ParkState(inverseGranularity);
+			
 			File configFile;
 			Scanner scanner;
 			try {
@@ -169,19 +803,19 @@ public class Simulator {
 				int i = -1;
 				for(String name : playerNames) {
 					if(!scanner.hasNextLine()) {
-		                Log.writeToLogFile("The number of lines in the configuration file should be at least the number of owners specified!");
-		                System.exit(1);
+		                log.writeToLogFile("The number of lines in the configuration file should be at least the number of owners specified!");
+		                throw new IOException("The configuration file has fewer lines than owners!");
 					}
 					i++;
 
-					Owner owner = new Owner(ownerNames.get(i));
+					Owner owner = new Owner(parkState, ownerNames.get(i));
 					
 					String[] lineDogs = scanner.nextLine().strip().split(" ");
 					if(numDogsPerOwner == -1)
 						numDogsPerOwner = lineDogs.length;
 					else if(numDogsPerOwner != lineDogs.length) {
-						Log.writeToLogFile("The number of dogs per owner in the configuration file should be the same for all owners!");
-		                System.exit(1);
+						log.writeToLogFile("The number of dogs per owner in the configuration file should be the same for all owners!");
+		                throw new IOException("The configuration file has different numbers of dogs per owner!");
 					}
 						
 				
@@ -222,10 +856,8 @@ public class Simulator {
 							
 							Ball ball = new Ball(dog);
 							allBalls.add(ball);
-							
-							dogToBallMap.put(dog, ball);
 						} catch(Exception e) {
-							Log.writeToLogFile("An error occurred while creating the dogs!");
+							log.writeToLogFile("An error occurred while creating the dogs!");
 							throw e;
 						}
 					}
@@ -240,478 +872,577 @@ public class Simulator {
 						playerWrapperToOwnerMap.put(playerWrapper, owner);
 						ownerToPlayerWrapperMap.put(owner, playerWrapper);
 					} catch (Exception e) {
-						Log.writeToLogFile("Unable to load player!");
+						log.writeToLogFile("Unable to load player!");
 						e.printStackTrace();
 					}
 				}
 			} catch(Exception e) {
 				scanner.close();
-                Log.writeToLogFile("Cannot interpret one or more lines of the configuration file!");
-                System.exit(1);
+                log.writeToLogFile("Cannot interpret one or more lines of the configuration file!");
+                throw new IOException("Cannot interpret one or more lines of the configuration file!", e);
 			}
 			
-			scanner.close();			
+			scanner.close();
 		}
 		
-		Log.writeToLogFile("\n");
-        Log.writeToLogFile("Project: Exercising the Dogs");
-        Log.writeToLogFile("Simulator Version: " + version);
-        Log.writeToLogFile("Players: " + playerNames.toString());
-        Log.writeToLogFile("GUI: " + (showGUI ? "enabled" : "disabled"));
-        Log.writeToLogFile("\n");
-	}
-	
-	private static void runSimulation() throws IOException, JSONException {
-		
-		HTTPServer server = null;
-		if(showGUI) {
-            server = new HTTPServer();
-            Log.writeToLogFile("Hosting the HTTP Server on " + server.addr());
-            if(!Desktop.isDesktopSupported())
-                Log.writeToLogFile("Desktop operations not supported!");
-            else if(!Desktop.getDesktop().isSupported(Desktop.Action.BROWSE))
-                Log.writeToLogFile("Desktop browse operation not supported!");
-            else {
-                try {
-                    Desktop.getDesktop().browse(new URI("http://localhost:" + server.port()));
-                } catch(URISyntaxException e) {}
-            }
-        }
-		
-		List<Owner> ownersThatExitedPark = new ArrayList<>();
-		Map<Owner, ParkLocation> ownerToMoveLocationMap = new HashMap<>();
-		Map<Dog, ParkLocation> dogToMoveLocationMap = new HashMap<>();
+		/**
+		 * Continuation of a park forked at the end of a round
+		 *
+		 * The state and engine are forked copy-on-write, so the rounds before the fork
+		 * are only simulated once. Every continuation draws from its own random stream,
+		 * and its players are created again, from other teams if requested.
+		 *
+		 * @param parent     park to fork
+		 * @param forkIndex  number of the continuation, from 1
+		 *
+		 */
+		ParkInstance(ParkInstance parent, int forkIndex) {
+			this.seed = parent.seed;
+			this.fixedStepReference = false;
+			this.random = new RestorableRandom(Objects.hash(parent.seed, parent.lastStep, forkIndex));
+			this.parkState = parent.parkState.fork();
+			this.lastStep = parent.lastStep;
+			this.allExerciseCompleted = parent.allExerciseCompleted;
 
-	    if(showGUI)
-			updateGUI(server, getGUIState(0, ownersThatExitedPark));
+			for(int ownerIndex = 0; ownerIndex < parkState.getNumOwners(); ownerIndex++) {
+				Owner owner = parkState.getOwner(ownerIndex);
+				allOwners.add(owner);
+				if(parkState.ownerExited[ownerIndex])
+					ownersThatExitedPark.add(owner);
+
+				String name = forkPlayerNames.get(ownerIndex);
+				try {
+					PlayerWrapper playerWrapper = loadPlayerWrapper(cleanName(name), name);
+					playerWrappers.add(playerWrapper);
+					playerWrapperToOwnerMap.put(playerWrapper, owner);
+					ownerToPlayerWrapperMap.put(owner, playerWrapper);
+				} catch (Exception e) {
+					log.writeToLogFile("Unable to load player!");
+					e.printStackTrace();
+				}
+			}
+			for(int dogIndex = 0; dogIndex < parkState.getNumDogs(); dogIndex++)
+				allDogs.add(parkState.getDog(dogIndex));
+			for(int ballIndex = 0; ballIndex < parkState.numBalls; ballIndex++)
+				allBalls.add(parkState.getBall(ballIndex));
+
+			parkEngine = parent.parkEngine.fork(parkState);
+			scoreBoard = new ScoreBoard(parkState, rounds);
+			parkEngine.setScoreBoard(scoreBoard);
+		}
 		
-		boolean allExerciseCompleted = false;
-		for(int i = 1; i <= rounds * inverseGranularity; i++) {
-			currentStep = i;
-						
-			Map<Owner, Owner> clonedOwnersMap = new HashMap<>();
-			Map<Owner, List<Owner>> clonedOtherOwnersMap = new HashMap<>();
+		private void startEngine(ProximityKernel proximityKernel) {
+			parkEngine = new ParkEngine(parkState, fixedStepReference ? ParkEngine.Mode.FIXED : engineMode, inverseGranularity, numThreads);
+			parkEngine.setReferenceTracking(referenceTracking && !fixedStepReference);
+			parkEngine.setDoubleBuffered(doubleBuffered && !fixedStepReference);
+			scoreBoard = new ScoreBoard(parkState, rounds);
+			parkEngine.setScoreBoard(scoreBoard);
+			if(proximityKernel != null)
+				parkEngine.setProximityKernel(proximityKernel);
+			for(PlayerWrapper playerWrapper : playerWrappers)
+				parkEngine.scheduleDecision(playerWrapperToOwnerMap.get(playerWrapper).getIndex(), 0);
+		}
+		
+		private void startRound(int round) {
+			parkState.ensureWritable();
+			ParkState roundSnapshot = parkState.snapshot();
+			parkState.startRound(round);
+			
+			List<PlayerWrapper> decidingPlayerWrappers = new ArrayList<>();
+			IndexSet decidingOwners = parkEngine.getDecidingOwners(lastStep);
+			for(int ownerIndex = decidingOwners.nextIndex(0); ownerIndex != ParkState.NONE; ownerIndex = decidingOwners.nextIndex(ownerIndex + 1)) {
+				Owner owner = parkState.getOwner(ownerIndex);
+				owner.resetAction();
+				decidingPlayerWrappers.add(ownerToPlayerWrapperMap.get(owner));
+			}
 			
-			if((currentStep - 1) % inverseGranularity == 0) {
-				for(PlayerWrapper playerWrapper : playerWrappers) {
+			if(concurrentDecisions) {
+				long deadline = System.currentTimeMillis() + timeout;
+				for(PlayerWrapper playerWrapper : decidingPlayerWrappers) {
 					Owner owner = playerWrapperToOwnerMap.get(playerWrapper);
-					List<Owner> otherOwners = new ArrayList<>(allOwners);
-					otherOwners.remove(owner);
-					clonedOwnersMap.put(owner, deepClone(owner));
-					clonedOtherOwnersMap.put(owner, deepClone(otherOwners));
+					ParkState ownerView = roundSnapshot.getViewFor(owner.getIndex());
+					playerWrapper.startDirective(round, ownerView.getOwner(owner.getIndex()), getViewedOtherOwners(ownerView, owner));
+				}
+				for(PlayerWrapper playerWrapper : decidingPlayerWrappers) {
+					Owner owner = playerWrapperToOwnerMap.get(playerWrapper);
+					applyDirective(owner, playerWrapper.awaitDirective(deadline));
+					scheduleNextDecision(owner, round);
 				}
 			}
-			
-			for(PlayerWrapper playerWrapper : playerWrappers) {
-				Owner owner = playerWrapperToOwnerMap.get(playerWrapper);
-				
-				if(ownersThatExitedPark.contains(owner))
-					continue;
-				
-				if((currentStep - 1) % inverseGranularity == 0) {
-					int round = (currentStep - 1) / inverseGranularity + 1;
-					owner.decrementActionTimeRemaining();
-					if(owner.getActionTimeRemaining() == 0.0) {
-						owner.resetAction();
-						
-						Owner clonedOwner = deepClone(clonedOwnersMap.get(owner));
-						List<Owner> clonedOtherOwners = deepClone(clonedOtherOwnersMap.get(owner));
-						
-						for(Owner clonedOtherOwner : clonedOtherOwners) {
-							if(!withinRange(clonedOwner.getLocation(), clonedOtherOwner.getLocation(), 50.0))
-								clonedOtherOwner.setCurrentSignal("_");
-							for(Dog dog : clonedOtherOwner.getDogs())
-								dog.setExerciseTimeRemaining(0.0);
-							clonedOtherOwner.setAllExerciseCompletionTime(Double.MAX_VALUE);
-							clonedOtherOwner.setAllExerciseCompleted(false);
-						}
-												
-						Directive directive = playerWrapper.chooseDirective(round, clonedOwner, clonedOtherOwners);
-						Instruction instruction = directive.instruction;
-						if(instruction != null) {
-							owner.setCurrentAction(instruction);
-							owner.setCurrentSignal("_");
-						}
-						if(instruction.equals(Instruction.CALL_SIGNAL)) {
-							String signal = directive.signalWord;
-							if(Dictionary.isInDictionary(signal.toLowerCase())) {
-								owner.setCurrentSignal(signal);
-								Log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + "'s signal word: \"" + signal + "\"");								
-							}
-							else {
-								Log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + "'s signal word \"" + signal + "\" is not found in the dictionary!");
-								owner.setCurrentAction(Instruction.NOTHING);
-							}
-						}
-						else if(instruction.equals(Instruction.EXIT_PARK)) {
-							if(owner.getLocation().equals(new ParkLocation(0.0, 0.0))) {
-								boolean allDogsWaitingForTheirOwner = true;
-								for(Dog dog : owner.getDogs()) {
-									if(!dog.isWaitingForItsOwner()) {
-										Log.writeToVerboseLogFile("The owner " + owner.getNameAsString() + " cannot exit the park because not all dogs are back!");
-										owner.setCurrentAction(Instruction.NOTHING);
-										allDogsWaitingForTheirOwner = false;
-										break;
-									}
-								}
-								if(allDogsWaitingForTheirOwner)
-									ownersThatExitedPark.add(owner);
-								Log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + " is exiting the park.");								
-							}							
-							else {
-								Log.writeToVerboseLogFile("The owner cannot exit the park, as it is at location " + owner.getLocationAsString() + " instead of (0, 0)!");								
-								owner.setCurrentAction(Instruction.NOTHING);
-							}
-						}
-						else if(instruction.equals(Instruction.NOTHING)) {
-							Log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + " has decided to do nothing.");
-							continue;
-						}
-						else if(instruction.equals(Instruction.THROW_BALL)) {
-							ParkLocation ballLocation = directive.parkLocation;
-							Dog dogToPlayWith = getOriginalDogFromClonedDog(directive.dogToPlayWith);
-							if(dogToPlayWith == null || !allDogs.contains(dogToPlayWith)) {
-								Log.writeToVerboseLogFile("Either no dog specified to throw ball, or the dog specified to throw ball does not exist!");
-								owner.setCurrentAction(Instruction.NOTHING);
-								continue;
-							}
-							else if(!dogToPlayWith.isWaitingForOwner(owner)) {
-								Log.writeToVerboseLogFile("The dog specified is not waiting for its owner!");
-								owner.setCurrentAction(Instruction.NOTHING);
-								continue;
-							}
-							else if(!dogToPlayWith.hasBall()) {
-								Log.writeToVerboseLogFile("The dog specified does not have a ball!");
-								owner.setCurrentAction(Instruction.NOTHING);
-								continue;
-							}
-							else if(!isWithinBounds(ballLocation)) {
-								Log.writeToVerboseLogFile("The ball target location specified must be within bounds of the park!");
-								owner.setCurrentAction(Instruction.NOTHING);
-								continue;
-							}
-							else if(!withinRange(owner.getLocation(), ballLocation, 40.0)) {
-								Log.writeToVerboseLogFile("The ball target location specified must be within 40 meters of the owner's position!");
-								owner.setCurrentAction(Instruction.NOTHING);
-								continue;
-							}
-	
-							Ball ballToThrow = dogToBallMap.get(dogToPlayWith);
-							
-							double randomDistance = random.nextDouble();
-							double randomAngle = Math.toRadians(random.nextDouble() * 360);
-							double newRow = ballLocation.getRow() + randomDistance * Math.sin(randomAngle);
-							double newColumn = ballLocation.getColumn() + randomDistance * Math.cos(randomAngle);
-							if(newRow < 0.0)
-								newRow = 0.0;
-							if(newRow > ParkLocation.PARK_SIZE - 1 + dataError)
-								newRow = ParkLocation.PARK_SIZE - 1;
-							if(newColumn < 0.0)
-								newColumn = 0.0;
-							if(newColumn > ParkLocation.PARK_SIZE - 1 + dataError)
-								newColumn = ParkLocation.PARK_SIZE - 1;
-							
-							dogToPlayWith.setHeadingForBall();
-							ballToThrow.setLocation(newRow, newColumn);
-	
-							Log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + " has thrown dog " + dogToPlayWith.getBreed() + " " + dogToPlayWith.getRealID() + "'s ball to " + ballToThrow.getLocationAsString() + ".");
-						}
-						else if(instruction.equals(Instruction.MOVE)) {
-							ParkLocation newLocation = directive.parkLocation;
-							if(!isWithinBounds(newLocation)) {
-								Log.writeToVerboseLogFile("The owner's new position must be within bounds of the park!");
-								owner.setCurrentAction(Instruction.NOTHING);
-								continue;
-							}
-							else if(!withinRange(owner.getLocation(), newLocation, 5.0)) {
-								Log.writeToVerboseLogFile("The owner's new position must be within 5 meters of the current position!");
-								owner.setCurrentAction(Instruction.NOTHING);
-								continue;
-							}
-							
-							ownerToMoveLocationMap.put(owner, newLocation);
-							
-							for(Dog dog : allDogs) {
-								if(!dog.isWaitingForOwner(owner))
-									continue;
-								if(!owner.hasDog(dog)) {
-									dog.setHeadingForPerson(dog.getOwner());
-									continue;
-								}
-								
-								double distance = getDistance(dog.getLocation(), owner.getLocation());
-								double dogOldRow = dog.getLocation().getRow();
-								double dogOldColumn = dog.getLocation().getColumn();
-								double ownerNewRow  = newLocation.getRow();
-								double ownerNewColumn = newLocation.getColumn();
-								double dogNewRow = distance == 0 ? dogOldRow : dogOldRow + (ownerNewRow - dogOldRow) * (distance - 1) / distance;
-								double dogNewColumn = distance == 0 ? dogOldColumn : dogOldColumn + (ownerNewColumn - dogOldColumn) * (distance - 1) / distance;
-								if(dogNewRow < 0.0)
-									dogNewRow = 0.0;
-								if(dogNewRow > ParkLocation.PARK_SIZE - 1 + dataError)
-									dogNewRow = ParkLocation.PARK_SIZE - 1;
-								if(dogNewColumn < 0.0)
-									dogNewColumn = 0.0;
-								if(dogNewColumn > ParkLocation.PARK_SIZE - 1 + dataError)
-									dogNewColumn = ParkLocation.PARK_SIZE - 1;
-	
-								dogToMoveLocationMap.put(dog, new ParkLocation(dogNewRow, dogNewColumn));
-							}
-							Log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + " is moving to " + owner.getLocationAsString() + ".");
-						}
-						else {
-							Log.writeToVerboseLogFile("The instruction specified is either unknown or null! Instruction \"nothing\" chosen.");
-							owner.setCurrentAction(Instruction.NOTHING);
-							continue;
-						}
-					}					
+			else {
+				for(PlayerWrapper playerWrapper : decidingPlayerWrappers) {
+					Owner owner = playerWrapperToOwnerMap.get(playerWrapper);
+					ParkState ownerView = roundSnapshot.getViewFor(owner.getIndex());
+					Directive directive = playerWrapper.chooseDirective(round, ownerView.getOwner(owner.getIndex()), getViewedOtherOwners(ownerView, owner));
+					applyDirective(owner, directive);
+					scheduleNextDecision(owner, round);
 				}
 			}
+		}
+		
+		private boolean isRoundRunning(int round) {
+			return !allExerciseCompleted && lastStep < round * inverseGranularity;
+		}
+		
+		private void runRounds(int firstRound) {
+			for(int round = firstRound; round <= rounds && !allExerciseCompleted; round++) {
+				startRound(round);
+				while(isRoundRunning(round))
+					advance();
+			}
+		}
+		
+		private void advance() {
+			int firstStep = lastStep + 1;
+			lastStep += parkEngine.advance(firstStep, inverseGranularity - (firstStep - 1) % inverseGranularity);
+			allExerciseCompleted = parkEngine.allExerciseCompleted();
+		}
+		
+		private void writeCheckpoint(DataOutputStream out) throws IOException {
+			out.writeInt(lastStep);
+			out.writeBoolean(allExerciseCompleted);
+			random.writeCheckpoint(out);
+			for(RestorableRandom playerRandom : playerRandoms)
+				playerRandom.writeCheckpoint(out);
+			parkState.writeCheckpoint(out);
+			parkEngine.writeCheckpoint(out);
+		}
+		
+		// The engine is created again on the restored state, so that its grids and sets are built from it
+		private void readCheckpoint(DataInputStream in) throws IOException {
+			lastStep = in.readInt();
+			allExerciseCompleted = in.readBoolean();
+			random.readCheckpoint(in);
+			for(RestorableRandom playerRandom : playerRandoms)
+				playerRandom.readCheckpoint(in);
+			parkState.readCheckpoint(in);
+			ProximityKernel proximityKernel = parkEngine.getProximityKernel();
+			parkEngine.shutdown();
+			startEngine(proximityKernel);
+			parkEngine.readCheckpoint(in);
+			for(int ownerIndex = 0; ownerIndex < parkState.getNumOwners(); ownerIndex++)
+				if(parkState.ownerExited[ownerIndex])
+					ownersThatExitedPark.add(parkState.getOwner(ownerIndex));
+		}
+		
+		private SimulationResult getResult(List<ParkInstance> continuations) {
+			List<SimulationResult.OwnerResult> ownerResults = new ArrayList<>();
+			for(Owner owner : allOwners) {
+				List<SimulationResult.DogResult> dogResults = new ArrayList<>();
+				for(Dog dog : owner.getDogs())
+					dogResults.add(new SimulationResult.DogResult(dog.getBreed(), dog.getRealID(), dog.getExerciseTimeCompleted()));
+				ownerResults.add(new SimulationResult.OwnerResult(owner.getNameAsString(), ownerToPlayerWrapperMap.get(owner).getPlayerName(),
+						scoreBoard.getExerciseT(owner.getIndex()), scoreBoard.getExerciseA(owner.getIndex()), scoreBoard.getScore(owner.getIndex()), dogResults));
+			}
 			
-			for(PlayerWrapper playerWrapper : playerWrappers) {
-				Owner owner = playerWrapperToOwnerMap.get(playerWrapper);
-				
-				if(ownerToMoveLocationMap.containsKey(owner)) {
-					ParkLocation newLocation = ownerToMoveLocationMap.get(owner);
-					if(withinRange(owner.getLocation(), newLocation, (double) 1.0 / inverseGranularity)) {
-						owner.setLocation(newLocation);
-						ownerToMoveLocationMap.remove(owner);
-					}
-					else {
-						double distance = getDistance(owner.getLocation(), newLocation);
-						double ownerOldRow = owner.getLocation().getRow();
-						double ownerOldColumn = owner.getLocation().getColumn();
-						double ownerNewRow = newLocation.getRow();
-						double ownerNewColumn = newLocation.getColumn();
-						double ownerIntermediateRow = distance == 0 ? ownerOldRow : ownerOldRow + (ownerNewRow - ownerOldRow) / (distance * inverseGranularity);
-						double ownerIntermediateColumn = distance == 0 ? ownerOldColumn : ownerOldColumn + (ownerNewColumn - ownerOldColumn) / (distance * inverseGranularity);
-						
-						owner.setLocation(new ParkLocation(ownerIntermediateRow, ownerIntermediateColumn));
-					}						
-				}
-				
-				for(Dog dog : owner.getDogs()) {
-					Ball ball = dogToBallMap.get(dog);
-					if(dogToMoveLocationMap.containsKey(dog)) {
-						ParkLocation newLocation = dogToMoveLocationMap.get(dog);
-						if(withinRange(dog.getLocation(), newLocation, (double) dog.getWalkingSpeed() / inverseGranularity)) {
-							dog.setLocation(newLocation);
-							ball.setLocation(newLocation);
-							dog.setWaitingForPerson(owner);
-							dogToMoveLocationMap.remove(dog);
-						}
-						else {
-							double distance = getDistance(dog.getLocation(), newLocation);
-							double dogOldRow = dog.getLocation().getRow();
-							double dogOldColumn = dog.getLocation().getColumn();
-							double dogNewRow = newLocation.getRow();
-							double dogNewColumn = newLocation.getColumn();
-							double dogIntermediateRow = distance == 0 ? dogOldRow : dogOldRow + (dogNewRow - dogOldRow) * dog.getWalkingSpeed() / (distance * inverseGranularity);
-							double dogIntermediateColumn = distance == 0 ? dogOldColumn : dogOldColumn + (dogNewColumn - dogOldColumn) * dog.getWalkingSpeed() / (distance * inverseGranularity);
-							
-							ParkLocation intermediateLocation = new ParkLocation(dogIntermediateRow, dogIntermediateColumn);
-							dog.setLocation(intermediateLocation);
-							ball.setLocation(intermediateLocation);
-						}
-					}
-					else if(dog.isHeadingForBall() && !dog.isStationary()) {
-						double speed = dog.isRunning() ? dog.getRunningSpeed() : dog.isWalking() ? dog.getWalkingSpeed() : 0.0;
-						if(withinRange(dog.getLocation(), ball.getLocation(), (double) speed / inverseGranularity)) {
-							dog.setLocation(ball.getLocation());
-							dog.setHasBall(true);
-							if(dog.isRunning())
-								dog.decreaseExerciseTimeRemaining(1.0 / inverseGranularity);
-							dog.setStationary();
-						}
-						else {
-							double distance = getDistance(dog.getLocation(), ball.getLocation());
-							double dogOldRow = dog.getLocation().getRow();
-							double dogOldColumn = dog.getLocation().getColumn();
-							double dogNewRow = ball.getLocation().getRow();
-							double dogNewColumn = ball.getLocation().getColumn();
-							double dogIntermediateRow = distance == 0 ? dogOldRow : dogOldRow + (dogNewRow - dogOldRow) * speed / (distance * inverseGranularity);
-							double dogIntermediateColumn = distance == 0 ? dogOldColumn : dogOldColumn + (dogNewColumn - dogOldColumn) * speed / (distance * inverseGranularity);
-							
-							dog.setLocation(new ParkLocation(dogIntermediateRow, dogIntermediateColumn));
-							if(dog.isRunning())
-								dog.decreaseExerciseTimeRemaining(1.0 / inverseGranularity);
-						}
-					}
-					else if(dog.isHeadingForPerson()) {
-						double speed = dog.getWalkingSpeed();
-						Owner ownerHeadingFor = dog.getOwnerHeadingFor();
-						
-						double fullDistance = getDistance(dog.getLocation(), ownerHeadingFor.getLocation());
-						double dogOldRow = dog.getLocation().getRow();
-						double dogOldColumn = dog.getLocation().getColumn();
-						double ownerNewRow = ownerHeadingFor.getLocation().getRow();
-						double ownerNewColumn = ownerHeadingFor.getLocation().getColumn();
-						double dogNewRow = fullDistance == 0 ? dogOldRow : dogOldRow + (ownerNewRow - dogOldRow) * (fullDistance - 1) / fullDistance;
-						double dogNewColumn = fullDistance == 0 ? dogOldColumn : dogOldColumn + (ownerNewColumn - dogOldColumn) * (fullDistance - 1) / fullDistance;
-						if(dogNewRow < 0.0)
-							dogNewRow = 0.0;
-						if(dogNewRow > ParkLocation.PARK_SIZE - 1 + dataError)
-							dogNewRow = ParkLocation.PARK_SIZE - 1;
-						if(dogNewColumn < 0.0)
-							dogNewColumn = 0.0;
-						if(dogNewColumn > ParkLocation.PARK_SIZE - 1 + dataError)
-							dogNewColumn = ParkLocation.PARK_SIZE - 1;
-						ParkLocation newLocation = new ParkLocation(dogNewRow, dogNewColumn);
-											
-						if(withinRange(dog.getLocation(), newLocation, (double) speed / inverseGranularity)) {
-							dog.setLocation(newLocation);
-							ball.setLocation(newLocation);
-							dog.setWaitingForPerson(dog.getOwnerHeadingFor());
-						}
-						else {
-							double requiredDistance = getDistance(dog.getLocation(), newLocation);
-							double dogIntermediateRow = requiredDistance == 0 ? dogOldRow : dogOldRow + (dogNewRow - dogOldRow) * speed / (requiredDistance * inverseGranularity);
-							double dogIntermediateColumn = requiredDistance == 0 ? dogOldColumn : dogOldColumn + (dogNewColumn - dogOldColumn) * speed / (requiredDistance * inverseGranularity);
-							
-							ParkLocation intermediateLocation = new ParkLocation(dogIntermediateRow, dogIntermediateColumn);
-							dog.setLocation(intermediateLocation);
-							ball.setLocation(intermediateLocation);
-						}
-					}
-					else if(dog.isWaitingForPerson() && !dog.isWaitingForItsOwner()) {
-						if(dog.getOwnerWaitingFor().getCurrentAction().equals(Instruction.MOVE))
-							dog.setHeadingForPerson(dog.getOwner());
-						else if(dog.getWaitingTimeRemaining() == 0.0)
-							dog.setHeadingForPerson(dog.getOwner());
-						else
-							dog.decreaseWaitingTimeRemaining(1.0 / inverseGranularity);
-					}
-				}
-			}	
+			List<SimulationResult> continuationResults = new ArrayList<>();
+			for(ParkInstance continuation : continuations)
+				continuationResults.add(continuation.getResult(List.of()));
+			return new SimulationResult(seed, allExerciseCompleted, ownerResults, continuationResults);
+		}
+		
+		// The reference runs each round once this park has, so both are compared at the same round boundary
+		private void runReferenceRound(int round) {
+			if(!reference.allExerciseCompleted) {
+				reference.startRound(round);
+				while(reference.isRoundRunning(round))
+					reference.advance();
+			}
+			maxReferenceLocationError = Math.max(maxReferenceLocationError, getReferenceLocationError());
+			maxReferenceExerciseTimeError = Math.max(maxReferenceExerciseTimeError, getReferenceExerciseTimeError());
+			maxReferenceScoreError = Math.max(maxReferenceScoreError, getReferenceScoreError());
+		}
+		
+		// The reference can take longer to complete all exercise, and it runs to its own end as a separate run would
+		private void finishReference() {
+			reference.runRounds(reference.lastStep / inverseGranularity + 1);
+			reference.parkEngine.shutdown();
+		}
+		
+		private double getReferenceLocationError() {
+			ParkState referenceState = reference.parkState;
+			double locationError = 0;
+			for(int ownerIndex = 0; ownerIndex < parkState.numOwners; ownerIndex++)
+				locationError = Math.max(locationError, ParkEngine.getDistance(parkState.ownerRows[ownerIndex], parkState.ownerColumns[ownerIndex], referenceState.ownerRows[ownerIndex], referenceState.ownerColumns[ownerIndex]));
+			for(int dogIndex = 0; dogIndex < parkState.numDogs; dogIndex++)
+				locationError = Math.max(locationError, ParkEngine.getDistance(parkState.dogRows[dogIndex], parkState.dogColumns[dogIndex], referenceState.dogRows[dogIndex], referenceState.dogColumns[dogIndex]));
+			return locationError;
+		}
+		
+		private double getReferenceExerciseTimeError() {
+			double exerciseTimeError = 0;
+			for(int dogIndex = 0; dogIndex < parkState.numDogs; dogIndex++)
+				exerciseTimeError = Math.max(exerciseTimeError, parkState.toSeconds(Math.abs(parkState.dogExerciseTicks[dogIndex] - reference.parkState.dogExerciseTicks[dogIndex])));
+			return exerciseTimeError;
+		}
+		
+		private double getReferenceScoreError() {
+			double scoreError = 0;
+			for(int ownerIndex = 0; ownerIndex < parkState.numOwners; ownerIndex++)
+				scoreError = Math.max(scoreError, Math.abs(scoreBoard.getScore(ownerIndex) - reference.scoreBoard.getScore(ownerIndex)));
+			return scoreError;
+		}
+		
+		private void logResults() {
+			if(engineMode == ParkEngine.Mode.ADAPTIVE)
+				log.writeToLogFile("The adaptive engine ran " + parkEngine.getNumSubSteps() + " sub-steps instead of " + lastStep + ".");
+			if(reference != null) {
+				log.writeToLogFile("Largest difference from the fixed-step run at the end of a round: " + maxReferenceLocationError + " meters, " + maxReferenceExerciseTimeError + " seconds of exercise, " + maxReferenceScoreError + " points of score.");
+				log.writeToLogFile("Difference from the fixed-step run at the end: " + getReferenceLocationError() + " meters, " + getReferenceExerciseTimeError() + " seconds of exercise, " + getReferenceScoreError() + " points of score.");
+				log.writeToLogFile("Largest local error of a round replayed with fixed steps from the same state: " + parkEngine.getMaxLocationError() + " meters, " + parkEngine.getMaxExerciseTimeError() + " seconds of exercise.");
+			}
 			
-			for(Dog dog : allDogs) {
-				Owner owner = dog.getOwner();
-				List<Owner> otherOwners = new ArrayList<>(allOwners);
-				otherOwners.remove(owner);
-
-				if(dog.hasBall() && !dog.isHeadingForPerson() && !dog.isWaitingForPerson()) {
-					if(withinRange(dog.getLocation(), owner.getLocation(), 10.0))
-						dog.setHeadingForPerson(owner);
-					else {
-						double distance = Double.MAX_VALUE;
-						Owner bestOwner = null;
-						for(Owner otherOwner : otherOwners) {
-							if(withinRange(dog.getLocation(), otherOwner.getLocation(), Math.min(10.0, distance))) {
-								distance = getDistance(dog.getLocation(), otherOwner.getLocation());
-								bestOwner = otherOwner;
-							}
-						}
-						if(bestOwner != null)
-							dog.setHeadingForPerson(bestOwner);
-						else
-							dog.setHeadingForPerson(dog.getOwner());
-					}
+			Simulator.this.logResults(getResult(List.of()));
+		}
+		
+		// Owners decide again in the round their action runs out, and owners that left the park never do
+		private void scheduleNextDecision(Owner owner, int round) {
+			if(parkState.ownerExited[owner.getIndex()])
+				return;
+			int nextRound = round + Math.max(1, (int) Math.ceil(owner.getActionTimeRemaining()));
+			parkEngine.scheduleDecision(owner.getIndex(), (long) (nextRound - 1) * inverseGranularity);
+		}
+
+		private void applyDirective(Owner owner, Directive directive) {
+			int ownerIndex = owner.getIndex();
+			Instruction instruction = directive.instruction;
+			if(instruction != null) {
+				owner.setCurrentAction(instruction);
+				owner.setCurrentSignal("_");
+			}
+			if(instruction.equals(Instruction.CALL_SIGNAL)) {
+				String signal = directive.signalWord;
+				if(Dictionary.isInDictionary(signal.toLowerCase())) {
+					owner.setCurrentSignal(signal);
+					log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + "'s signal word: \"" + signal + "\"");								
+				}
+				else {
+					log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + "'s signal word \"" + signal + "\" is not found in the dictionary!");
+					owner.setCurrentAction(Instruction.NOTHING);
 				}
-				else if(dog.isHeadingForBall()) {
-					List<Dog> otherDogs = new ArrayList<>(allDogs);
-					otherDogs.remove(dog);
-
-					boolean dogObstacleFound = false;
-					for(Dog otherDog : otherDogs) {
-						if(withinRange(dog.getLocation(), otherDog.getLocation(), 1.0)) {
-							dog.setWalking();
-							dogObstacleFound = true;
+			}
+			else if(instruction.equals(Instruction.EXIT_PARK)) {
+				if(owner.getLocation().equals(new ParkLocation(0.0, 0.0))) {
+					boolean allDogsWaitingForTheirOwner = true;
+					for(Dog dog : owner.getDogs()) {
+						if(!dog.isWaitingForItsOwner()) {
+							log.writeToVerboseLogFile("The owner " + owner.getNameAsString() + " cannot exit the park because not all dogs are back!");
+							owner.setCurrentAction(Instruction.NOTHING);
+							allDogsWaitingForTheirOwner = false;
 							break;
 						}
 					}
-					if(dogObstacleFound)
-						continue;
-					boolean ownerObstacleFound = false;
-					for(Owner anyOwner : allOwners) {
-						if(withinRange(dog.getLocation(), anyOwner.getLocation(), 1.0)) {
-							dog.setWalking();
-							ownerObstacleFound = true;
-							break;
-						}							
+					if(allDogsWaitingForTheirOwner) {
+						ownersThatExitedPark.add(owner);
+						parkEngine.removeOwner(owner.getIndex());
 					}
-					if(ownerObstacleFound)
-						continue;
-					dog.setRunning();
+					log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + " is exiting the park.");								
+				}							
+				else {
+					log.writeToVerboseLogFile("The owner cannot exit the park, as it is at location " + owner.getLocationAsString() + " instead of (0, 0)!");								
+					owner.setCurrentAction(Instruction.NOTHING);
 				}
 			}
-			
-			for(Owner owner : allOwners) {
-				if(owner.allExerciseCompleted())
-					continue;
-				boolean allOwnerExerciseCompleted = true;
-				for(Dog dog : owner.getDogs()) {
-					if(Dog.TOTAL_EXERCISE_TIME - dog.getExerciseTimeCompleted() > dataError) {
-						allOwnerExerciseCompleted = false;
-						break;
-					}
+			else if(instruction.equals(Instruction.NOTHING)) {
+				if(log.getVerboseLoggingStatus())
+					log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + " has decided to do nothing.");
+				return;
+			}
+			else if(instruction.equals(Instruction.THROW_BALL)) {
+				ParkLocation ballLocation = directive.parkLocation;
+				Dog dogToPlayWith = getOriginalDogFromViewedDog(directive.dogToPlayWith);
+				if(dogToPlayWith == null) {
+					log.writeToVerboseLogFile("Either no dog specified to throw ball, or the dog specified to throw ball does not exist!");
+					owner.setCurrentAction(Instruction.NOTHING);
+					return;
 				}
-				
-				if(allOwnerExerciseCompleted) {
-					owner.setAllExerciseCompleted(true);
-					owner.setAllExerciseCompletionTime(currentStep * 1.0 / inverseGranularity);
+				else if(!dogToPlayWith.isWaitingForOwner(owner)) {
+					log.writeToVerboseLogFile("The dog specified is not waiting for its owner!");
+					owner.setCurrentAction(Instruction.NOTHING);
+					return;
+				}
+				else if(!dogToPlayWith.hasBall()) {
+					log.writeToVerboseLogFile("The dog specified does not have a ball!");
+					owner.setCurrentAction(Instruction.NOTHING);
+					return;
 				}
+				else if(!isWithinBounds(ballLocation)) {
+					log.writeToVerboseLogFile("The ball target location specified must be within bounds of the park!");
+					owner.setCurrentAction(Instruction.NOTHING);
+					return;
+				}
+				else if(!withinRange(owner.getLocation(), ballLocation, 40.0)) {
+					log.writeToVerboseLogFile("The ball target location specified must be within 40 meters of the owner's position!");
+					owner.setCurrentAction(Instruction.NOTHING);
+					return;
+				}
+	
+				Ball ballToThrow = dogToPlayWith.getBall();
+			
+				double randomDistance = random.nextDouble();
+				double randomAngle = Math.toRadians(random.nextDouble() * 360);
+				double newRow = ballLocation.getRow() + randomDistance * Math.sin(randomAngle);
+				double newColumn = ballLocation.getColumn() + randomDistance * Math.cos(randomAngle);
+				if(newRow < 0.0)
+					newRow = 0.0;
+				if(newRow > ParkLocation.PARK_SIZE - 1 + dataError)
+					newRow = ParkLocation.PARK_SIZE - 1;
+				if(newColumn < 0.0)
+					newColumn = 0.0;
+				if(newColumn > ParkLocation.PARK_SIZE - 1 + dataError)
+					newColumn = ParkLocation.PARK_SIZE - 1;
+			
+				dogToPlayWith.setHeadingForBall();
+				ballToThrow.setLocation(newRow, newColumn);
+	
+				if(log.getVerboseLoggingStatus())
+					log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + " has thrown dog " + dogToPlayWith.getBreed() + " " + dogToPlayWith.getRealID() + "'s ball to " + ballToThrow.getLocationAsString() + ".");
 			}
+			else if(instruction.equals(Instruction.MOVE)) {
+				ParkLocation newLocation = directive.parkLocation;
+				if(!isWithinBounds(newLocation)) {
+					log.writeToVerboseLogFile("The owner's new position must be within bounds of the park!");
+					owner.setCurrentAction(Instruction.NOTHING);
+					return;
+				}
+				else if(!withinRange(owner.getLocation(), newLocation, 5.0)) {
+					log.writeToVerboseLogFile("The owner's new position must be within 5 meters of the current position!");
+					owner.setCurrentAction(Instruction.NOTHING);
+					return;
+				}
 			
-			allExerciseCompleted = true;
-			for(Owner owner : allOwners) {
-				if(!owner.allExerciseCompleted()) {
-					allExerciseCompleted = false;
-					break;
+				double ownerNewRow  = newLocation.getRow();
+				double ownerNewColumn = newLocation.getColumn();
+				parkState.setOwnerMoving(ownerIndex, true);
+				parkState.ownerTargetRows[ownerIndex] = ownerNewRow;
+				parkState.ownerTargetColumns[ownerIndex] = ownerNewColumn;
+			
+				for(int dogIndex = 0; dogIndex < parkState.numDogs; dogIndex++) {
+					if(parkState.dogOwnersWaitingFor[dogIndex] != ownerIndex)
+						continue;
+					if(parkState.dogOwners[dogIndex] != ownerIndex) {
+						parkState.setDogHeadingForPerson(dogIndex, parkState.dogOwners[dogIndex]);
+						continue;
+					}
+				
+					double dogOldRow = parkState.dogRows[dogIndex];
+					double dogOldColumn = parkState.dogColumns[dogIndex];
+					double distance = ParkEngine.getDistance(dogOldRow, dogOldColumn, parkState.ownerRows[ownerIndex], parkState.ownerColumns[ownerIndex]);
+					double dogNewRow = distance == 0 ? dogOldRow : dogOldRow + (ownerNewRow - dogOldRow) * (distance - 1) / distance;
+					double dogNewColumn = distance == 0 ? dogOldColumn : dogOldColumn + (ownerNewColumn - dogOldColumn) * (distance - 1) / distance;
+	
+					parkState.setDogMoving(dogIndex, true);
+					parkState.dogTargetRows[dogIndex] = ParkState.clampToPark(dogNewRow);
+					parkState.dogTargetColumns[dogIndex] = ParkState.clampToPark(dogNewColumn);
 				}
+				if(log.getVerboseLoggingStatus())
+					log.writeToVerboseLogFile("Owner " + owner.getNameAsString() + " is moving to " + owner.getLocationAsString() + ".");
 			}
-			if(allExerciseCompleted)
-				break;
-			
-			if(currentStep % inverseGranularity == 0) {
-				int round = currentStep / inverseGranularity;
-			    if(showGUI)
-					updateGUI(server, getGUIState(round, ownersThatExitedPark));				
+			else {
+				log.writeToVerboseLogFile("The instruction specified is either unknown or null! Instruction \"nothing\" chosen.");
+				owner.setCurrentAction(Instruction.NOTHING);
+				return;
 			}
 		}
-		
-	    if(showGUI)
-			updateGUI(server, getGUIState((int) Math.floor(currentStep / inverseGranularity), ownersThatExitedPark));
+	
+		private List<Owner> getViewedOtherOwners(ParkState ownerView, Owner owner) {
+			List<Owner> viewedOtherOwners = new ArrayList<>();
+			for(Owner otherOwner : allOwners)
+				if(otherOwner != owner)
+					viewedOtherOwners.add(ownerView.getOwner(otherOwner.getIndex()));
+			return viewedOtherOwners;
+		}
+	
+		private Dog getOriginalDogFromViewedDog(Dog viewedDog) {
+			if(viewedDog == null)
+				return null;
+			if(viewedDog.getState().isSamePark(parkState))
+				return viewedDog.getID() < parkState.getNumDogs() ? parkState.getDog(viewedDog.getID()) : null;
+
+			// Dogs a player built outside of its view are matched by their identifying fields
+			for(Dog dog : allDogs) {
+				if(viewedDog.getRandomID().equals(dog.getRandomID()) &&
+						viewedDog.getBreed().equals(dog.getBreed()) && 
+						viewedDog.getOwner().getNameAsString().equals(dog.getOwner().getNameAsString()))
+					return dog;
+			}
+			return null;
+		}
+	
+		private PlayerWrapper loadPlayerWrapper(String playerName, String modifiedPlayerName) throws Exception {
+			log.writeToLogFile("Loading team " + playerName + "...");
+
+			int teamID = playerWrappers.size() + 1;
+			Player player;
+			// Players of a fixed-step reference print the same as those of the park, so they are kept quiet
+			if(fixedStepReference) {
+				PlayerOutput.install();
+				PlayerOutput.silence(Thread.currentThread());
+			}
+			try {
+				player = loadPlayer(playerName, teamID);
+			} finally {
+				PlayerOutput.unsilence(Thread.currentThread());
+			}
+	        if(player == null) {
+	            log.writeToLogFile("Cannot load team " + playerName + "!");
+	            throw new IOException("Cannot load team " + playerName + "!");
+	        }
+
+	        PlayerWrapper playerWrapper = new PlayerWrapper(player, modifiedPlayerName, timeout, log);
+	        if(fixedStepReference)
+	        	playerWrapper.silence();
+	        return playerWrapper;
+	    }
+	
+		private Player loadPlayer(String playerName, int teamID) throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException {
+			String playerPackagePath = sourcePath + File.separator + "dogs" + File.separator + playerName;
+			compilePlayer(playerName, playerPackagePath);
+        
+	        ClassLoader loader = Simulator.class.getClassLoader();
+	        if(loader == null)
+	            throw new IOException("Cannot find the Java class loader!");
+	        loader = playerClassLoaders.computeIfAbsent(playerName, name -> new PlayerClassLoader(name, Simulator.class.getClassLoader()));
+
+	        @SuppressWarnings("rawtypes")
+	        Class rawClass = loader.loadClass("dogs." + playerName + ".Player");
+	        Class[] classArgs = new Class[]{Integer.class, Integer.class, Integer.class, Integer.class, Random.class, SimPrinter.class};
+        
+	        // Players deciding concurrently get their own random generators so that the results do not depend on scheduling
+	        Random playerRandom = random;
+	        if(concurrentDecisions) {
+	        	RestorableRandom teamRandom = new RestorableRandom(Objects.hash(seed, teamID));
+	        	playerRandoms.add(teamRandom);
+	        	playerRandom = teamRandom;
+	        }
+        
+	        return (Player) rawClass.getDeclaredConstructor(classArgs).newInstance(rounds, numDogsPerOwner, numOwners, seed, playerRandom, new SimPrinter(enablePrints && !fixedStepReference));
+	    }
 
+		// The sources of a team are only checked once per process, since every park of every simulation loads the same classes
+		private void compilePlayer(String playerName, String playerPackagePath) throws IOException {
+			synchronized(checkedPlayerPackages) {
+				if(checkedPlayerPackages.contains(playerPackagePath))
+					return;
+				
+		        Set<File> playerFiles = getFilesInDirectory(playerPackagePath, ".java");
+				String simPath = sourcePath + File.separator + "dogs" + File.separator + "sim";
+		        Set<File> simFiles = getFilesInDirectory(simPath, ".java");
+	
+		        File classFile = new File(playerPackagePath + File.separator + "Player.class");
+	
+		        long classModified = classFile.exists() ? classFile.lastModified() : -1;
+		        if(classModified < 0 || classModified < lastModified(playerFiles) || classModified < lastModified(simFiles)) {
+		            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		            if(compiler == null)
+		                throw new IOException("Cannot find the Java compiler!");
+	
+		            StandardJavaFileManager manager = compiler.getStandardFileManager(null, null, null);
+		            log.writeToLogFile("Compiling for team " + playerName + "...");
+	
+		            if(!compiler.getTask(null, manager, null, null, null, manager.getJavaFileObjectsFromFiles(playerFiles)).call())
+		                throw new IOException("The compilation failed!");
+	            
+		            classFile = new File(playerPackagePath + File.separator + "Player.class");
+		            if(!classFile.exists())
+		                throw new FileNotFoundException("The class file is missing!");
+		        }
+		        checkedPlayerPackages.add(playerPackagePath);
+			}
+		}
+
+		private String getGUIState(Integer currentRound) throws JSONException {
+			JSONObject jsonObj = new JSONObject();
+			jsonObj.put("refresh", 1000.0 / fps);
+			jsonObj.put("totalRounds", rounds);
+			jsonObj.put("currentRound", currentRound);
+			jsonObj.put("numDogsPerOwner", numDogsPerOwner);
+			jsonObj.put("numOwners", numOwners);
+			jsonObj.put("granularity", 1.0 / inverseGranularity);
 		
-		DecimalFormat decimalFormat = new DecimalFormat("######.####");
+			DecimalFormat decimalFormat = new DecimalFormat("######.####");
 		
-		if(allExerciseCompleted)
-			Log.writeToLogFile("All exercise has been completed!");
-		else
-			Log.writeToLogFile("Not all exercise has been completed!");
-		for(Owner owner : allOwners) {
-			List<Owner> otherOwners = new ArrayList<>(allOwners);
-			otherOwners.remove(owner);
-
-			String teamName = ownerToPlayerWrapperMap.get(owner).getPlayerName();
+			JSONObject ownersObj = new JSONObject();
+			for(Owner owner : allOwners) {
+				JSONObject ownerObj = new JSONObject();
+			
+				String ownerNameAsString = owner.getNameAsString();
+				String ownerLocationAsString = owner.getLocationAsString();
+				String ownerCurrentActionAsString = owner.getCurrentAction().name();
+				String ownerCurrentSignal = owner.getCurrentSignal();
+				String ownerTeam = ownerToPlayerWrapperMap.get(owner).getPlayerName();
+				double ownerActionTimeRemaining = owner.getActionTimeRemaining();
+				double exerciseT = scoreBoard.getExerciseT(owner.getIndex());
+				double exerciseA = scoreBoard.getExerciseA(owner.getIndex());
+				double exerciseScore = scoreBoard.getScore(owner.getIndex());
 			
-			double exerciseT = getExerciseT(owner);
-			double exerciseA = getExerciseA(otherOwners);
-			double exerciseScore = 0.5 * (exerciseT + exerciseA);
+				JSONArray dogsArray = new JSONArray();
+				for(Dog dog : owner.getDogs()) {
+					JSONObject dogObj = new JSONObject();
+				
+					int dogRealID = dog.getRealID();
+					String dogBreedAsString = dog.getBreed().name();
+					String dogOwnerNameAsString = dog.getOwner().getNameAsString();
+					String dogOwnerWaitingForNameAsString = dog.isWaitingForPerson() ? dog.getOwnerWaitingFor().getNameAsString() : "";
+					String dogOwnerHeadingForNameAsString = dog.isHeadingForPerson() ? dog.getOwnerHeadingFor().getNameAsString() : "";
+					String dogLocationAsString = dog.getLocationAsString();
+					String ballLocationAsString = dog.getBall().getLocationAsString();				
+					boolean dogIsRunning = dog.isRunning();
+					boolean dogIsWalking = dog.isWalking();
+					boolean dogIsStationary = dog.isStationary();
+					boolean dogIsHeadingForBall = dog.isHeadingForBall();
+					boolean dogIsHeadingForPerson = dog.isHeadingForPerson();
+					boolean dogIsWaitingForPerson = dog.isWaitingForPerson();
+					boolean dogHasBall = dog.hasBall();
+				
+					dogObj.put("breed", dogBreedAsString.substring(0, 1) + dogBreedAsString.substring(1).toLowerCase());
+					dogObj.put("realID", dogRealID);
+					dogObj.put("owner", dogOwnerNameAsString);
+					dogObj.put("ownerWaitingFor", dogOwnerWaitingForNameAsString);
+					dogObj.put("ownerHeadingFor", dogOwnerHeadingForNameAsString);
+					dogObj.put("location", dogLocationAsString);
+					dogObj.put("ballLocation", ballLocationAsString);
+					dogObj.put("isRunning", dogIsRunning);
+					dogObj.put("isWalking", dogIsWalking);
+					dogObj.put("isStationary", dogIsStationary);
+					dogObj.put("isHeadingForBall", dogIsHeadingForBall);
+					dogObj.put("isHeadingForPerson", dogIsHeadingForPerson);
+					dogObj.put("isWaitingForPerson", dogIsWaitingForPerson);
+					dogObj.put("hasBall", dogHasBall);
+					dogObj.put("maxWaitingTime", decimalFormat.format(Dog.MAX_WAITING_TIME));
+					dogObj.put("totalExerciseTime", decimalFormat.format(Dog.TOTAL_EXERCISE_TIME));
+					dogObj.put("totalExerciseCompleted", decimalFormat.format(dog.getExerciseTimeCompleted()));
+					dogObj.put("completedExercise", Dog.TOTAL_EXERCISE_TIME - dog.getExerciseTimeCompleted() <= dataError);
+					dogObj.put("percentageExerciseCompleted", decimalFormat.format(100 * dog.getExerciseTimeCompleted() / Dog.TOTAL_EXERCISE_TIME));
+				
+					dogsArray.put(dogObj);				
+				}
 			
-			Log.writeToLogFile("Owner: " + owner.getNameAsString() + " (" + teamName + ")");
-			Log.writeToLogFile("\tScore: " + decimalFormat.format(exerciseScore) + " seconds");
-			Log.writeToLogFile("\tT: " + decimalFormat.format(exerciseT) + " seconds");
-			Log.writeToLogFile("\tA: " + decimalFormat.format(exerciseA) + " seconds");
+				ownerObj.put("dogs", dogsArray);
+				ownerObj.put("location", ownerLocationAsString);
+				ownerObj.put("action", ownerCurrentActionAsString);
+				ownerObj.put("actionTimeRemaining", ownerActionTimeRemaining);
+				ownerObj.put("signal", ownerCurrentSignal);
+				ownerObj.put("team", ownerTeam);
+				ownerObj.put("T", decimalFormat.format(exerciseT));
+				ownerObj.put("A", decimalFormat.format(exerciseA));
+				ownerObj.put("score", decimalFormat.format(exerciseScore));
 			
-			for(Dog dog : owner.getDogs())
-				Log.writeToLogFile("\t" + dog.getBreed().name() + " " + dog.getRealID() + ": " + decimalFormat.format(100 * dog.getExerciseTimeCompleted() / Dog.TOTAL_EXERCISE_TIME) + "% exercise completed (" + decimalFormat.format(dog.getExerciseTimeCompleted()) + " seconds)");					
+				if(ownersThatExitedPark.contains(owner))
+					ownerObj.put("exitedPark", true);
+				else
+					ownerObj.put("exitedPark", false);
+						
+				ownersObj.put(ownerNameAsString, ownerObj);			
+			}
+			jsonObj.put("owners", ownersObj);
+
+			return jsonObj.toString();
 		}
-		
-		
-		if(!showGUI)
-			System.exit(0);
-	}
-	
-	private static double getDistance(ParkLocation parkLocation1, ParkLocation parkLocation2) {
-		double deltaRow = parkLocation2.getRow() - parkLocation1.getRow();
-		double deltaColumn = parkLocation2.getColumn() - parkLocation1.getColumn();
-		
-		return Math.sqrt(Math.pow(deltaRow, 2) + Math.pow(deltaColumn, 2));
 	}
 	
 	private static boolean withinRange(ParkLocation parkLocation1, ParkLocation parkLocation2, double range) {		
-		return getDistance(parkLocation1, parkLocation2) <= (range + dataError);
+		return ParkEngine.withinRange(parkLocation1.getRow(), parkLocation1.getColumn(), parkLocation2.getRow(), parkLocation2.getColumn(), range);
 	}
 	
 	private static boolean isWithinBounds(ParkLocation parkLocation) {
@@ -721,39 +1452,22 @@ public class Simulator {
 				parkLocation.getColumn() >= 0.0 && parkLocation.getColumn() <= (parkSize - 1 + dataError);
 	}
 	
-	private static Dog getOriginalDogFromClonedDog(Dog clonedDog) {
-		if(clonedDog == null)
-			return null;
-		for(Dog dog : allDogs) {
-			if(clonedDog.getRandomID().equals(dog.getRandomID()) &&
-					clonedDog.getBreed().equals(dog.getBreed()) && 
-					clonedDog.getOwner().getNameAsString().equals(dog.getOwner().getNameAsString()))
-				return dog;
-		}
-		return null;
-	}
-	
-	private static double getExerciseT(Owner owner) {
-		double allExerciseCompletionTime = owner.getAllExerciseCompletionTime();
-		if(allExerciseCompletionTime != Double.MAX_VALUE)
-			return allExerciseCompletionTime;
-		
-		double computedExerciseT = rounds;
-		for(Dog dog : owner.getDogs())
-			computedExerciseT += dog.getExerciseTimeRemaining() * 2;
-		return computedExerciseT;
-	}
-	
-	private static double getExerciseA(List<Owner> owners) {
-		if(owners.size() == 0)
-			return 0;
-		
-		double averageExerciseT = 0.0;
-		for(Owner owner : owners)
-			averageExerciseT += getExerciseT(owner);
-		averageExerciseT /= owners.size();
+	private void logResults(SimulationResult result) {
+		DecimalFormat decimalFormat = new DecimalFormat("######.####");
 		
-		return averageExerciseT;
+		if(result.isAllExerciseCompleted())
+			log.writeToLogFile("All exercise has been completed!");
+		else
+			log.writeToLogFile("Not all exercise has been completed!");
+		for(SimulationResult.OwnerResult ownerResult : result.getOwnerResults()) {
+			log.writeToLogFile("Owner: " + ownerResult.getOwnerName() + " (" + ownerResult.getPlayerName() + ")");
+			log.writeToLogFile("\tScore: " + decimalFormat.format(ownerResult.getScore()) + " seconds");
+			log.writeToLogFile("\tT: " + decimalFormat.format(ownerResult.getExerciseT()) + " seconds");
+			log.writeToLogFile("\tA: " + decimalFormat.format(ownerResult.getExerciseA()) + " seconds");
+			
+			for(SimulationResult.DogResult dogResult : ownerResult.getDogResults())
+				log.writeToLogFile("\t" + dogResult.getBreed().name() + " " + dogResult.getRealID() + ": " + decimalFormat.format(100 * dogResult.getExerciseTimeCompleted() / Dog.TOTAL_EXERCISE_TIME) + "% exercise completed (" + decimalFormat.format(dogResult.getExerciseTimeCompleted()) + " seconds)");
+		}
 	}
 	
 	private static String cleanName(String playerName) {
@@ -768,73 +1482,45 @@ public class Simulator {
 		return cleanedPlayerName;
 	}	
 	
-	private static <T extends Object> T deepClone(T obj) {
-        if(obj == null)
-            return null;
-
-        try {
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-            objectOutputStream.writeObject(obj);
-            ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
-            ObjectInputStream objectInputStream = new ObjectInputStream(byteArrayInputStream);
-            
-            return (T) objectInputStream.readObject();
-        }
-        catch(Exception e) {
-            return null;
-        }
+	// Classes of a team are defined again for each loader, so that static fields of a player are not shared between parks,
+	// but their bytes are read from disk only once per process
+	private class PlayerClassLoader extends ClassLoader {
+		
+		private final String packagePrefix;
+		private final String packagePath;
+		
+		PlayerClassLoader(String playerName, ClassLoader parent) {
+			super(parent);
+			this.packagePrefix = "dogs." + playerName + ".";
+			this.packagePath = sourcePath + File.separator + "dogs" + File.separator + playerName;
+		}
+		
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if(!name.startsWith(packagePrefix))
+				return super.loadClass(name, resolve);
+			synchronized(getClassLoadingLock(name)) {
+				Class<?> loadedClass = findLoadedClass(name);
+				if(loadedClass == null) {
+					String classPath = packagePath + File.separator + name.substring(packagePrefix.length()).replace('.', File.separatorChar) + ".class";
+					byte[] bytes = playerClassBytes.get(classPath);
+					if(bytes == null) {
+						try {
+							bytes = Files.readAllBytes(new File(classPath).toPath());
+						} catch(IOException e) {
+							throw new ClassNotFoundException(name, e);
+						}
+						playerClassBytes.putIfAbsent(classPath, bytes);
+					}
+					loadedClass = defineClass(name, bytes, 0, bytes.length);
+				}
+				if(resolve)
+					resolveClass(loadedClass);
+				return loadedClass;
+			}
+		}
 	}
 	
-	private static PlayerWrapper loadPlayerWrapper(String playerName, String modifiedPlayerName) throws Exception {
-		Log.writeToLogFile("Loading team " + playerName + "...");
-
-		int teamID = playerWrappers.size() + 1;
-		Player player = loadPlayer(playerName, teamID);
-        if(player == null) {
-            Log.writeToLogFile("Cannot load team " + playerName + "!");
-            System.exit(1);
-        }
-
-        return new PlayerWrapper(player, modifiedPlayerName, timeout);
-    }
-	
-	private static Player loadPlayer(String playerName, int teamID) throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException {
-		String playerPackagePath = sourcePath + File.separator + "dogs" + File.separator + playerName;
-        Set<File> playerFiles = getFilesInDirectory(playerPackagePath, ".java");
-		String simPath = sourcePath + File.separator + "dogs" + File.separator + "sim";
-        Set<File> simFiles = getFilesInDirectory(simPath, ".java");
-
-        File classFile = new File(playerPackagePath + File.separator + "Player.class");
-
-        long classModified = classFile.exists() ? classFile.lastModified() : -1;
-        if(classModified < 0 || classModified < lastModified(playerFiles) || classModified < lastModified(simFiles)) {
-            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-            if(compiler == null)
-                throw new IOException("Cannot find the Java compiler!");
-
-            StandardJavaFileManager manager = compiler.getStandardFileManager(null, null, null);
-            Log.writeToLogFile("Compiling for team " + playerName + "...");
-
-            if(!compiler.getTask(null, manager, null, null, null, manager.getJavaFileObjectsFromFiles(playerFiles)).call())
-                throw new IOException("The compilation failed!");
-            
-            classFile = new File(playerPackagePath + File.separator + "Player.class");
-            if(!classFile.exists())
-                throw new FileNotFoundException("The class file is missing!");
-        }
-        
-        ClassLoader loader = Simulator.class.getClassLoader();
-        if(loader == null)
-            throw new IOException("Cannot find the Java class loader!");
-
-        @SuppressWarnings("rawtypes")
-        Class rawClass = loader.loadClass("dogs." + playerName + ".Player");
-        Class[] classArgs = new Class[]{Integer.class, Integer.class, Integer.class, Integer.class, Random.class, SimPrinter.class};
-        
-        return (Player) rawClass.getDeclaredConstructor(classArgs).newInstance(rounds, numDogsPerOwner, numOwners, seed, random, new SimPrinter(enablePrints));
-    }
-
 	private static long lastModified(Iterable<File> files) {
         long lastDate = 0;
         for(File file : files) {
@@ -867,7 +1553,7 @@ public class Simulator {
         return files;
 	}
 	
-	private static void updateGUI(HTTPServer server, String content) {
+	private void updateGUI(HTTPServer server, String content) {
 		if(server == null)
 			return;
 		
@@ -878,7 +1564,7 @@ public class Simulator {
                 	guiPath = server.request();
                     break;
                 } catch(IOException e) {
-                    Log.writeToVerboseLogFile("HTTP request error: " + e.getMessage());
+                    log.writeToVerboseLogFile("HTTP request error: " + e.getMessage());
                 }
             }
             
@@ -886,7 +1572,7 @@ public class Simulator {
                 try {
                     server.reply(content);
                 } catch(IOException e) {
-                    Log.writeToVerboseLogFile("HTTP dynamic reply error: " + e.getMessage());
+                    log.writeToVerboseLogFile("HTTP dynamic reply error: " + e.getMessage());
                 }
                 return;
             }
@@ -894,7 +1580,7 @@ public class Simulator {
             if(guiPath.equals(""))
             	guiPath = "webpage.html";
             else if(!Character.isLetter(guiPath.charAt(0))) {
-                Log.writeToVerboseLogFile("Potentially malicious HTTP request: \"" + guiPath + "\"");
+                log.writeToVerboseLogFile("Potentially malicious HTTP request: \"" + guiPath + "\"");
                 break;
             }
 
@@ -902,106 +1588,17 @@ public class Simulator {
                 File file = new File(staticsPath + File.separator + guiPath);
                 server.reply(file);
             } catch(IOException e) {
-                Log.writeToVerboseLogFile("HTTP static reply error: " + e.getMessage());
+                log.writeToVerboseLogFile("HTTP static reply error: " + e.getMessage());
             }
         }		
 	}
 	
-	private static String getGUIState(Integer currentRound, List<Owner> ownersThatExitedPark) throws JSONException {
-		JSONObject jsonObj = new JSONObject();
-		jsonObj.put("refresh", 1000.0 / fps);
-		jsonObj.put("totalRounds", rounds);
-		jsonObj.put("currentRound", currentRound);
-		jsonObj.put("numDogsPerOwner", numDogsPerOwner);
-		jsonObj.put("numOwners", numOwners);
-		jsonObj.put("granularity", 1.0 / inverseGranularity);
-		
-		DecimalFormat decimalFormat = new DecimalFormat("######.####");
-		
-		JSONObject ownersObj = new JSONObject();
-		for(Owner owner : allOwners) {
-			List<Owner> otherOwners = new ArrayList<>(allOwners);
-			otherOwners.remove(owner);
-			
-			JSONObject ownerObj = new JSONObject();
-			
-			String ownerNameAsString = owner.getNameAsString();
-			String ownerLocationAsString = owner.getLocationAsString();
-			String ownerCurrentActionAsString = owner.getCurrentAction().name();
-			String ownerCurrentSignal = owner.getCurrentSignal();
-			String ownerTeam = ownerToPlayerWrapperMap.get(owner).getPlayerName();
-			double ownerActionTimeRemaining = owner.getActionTimeRemaining();
-			double exerciseT = getExerciseT(owner);
-			double exerciseA = getExerciseA(otherOwners);
-			double exerciseScore = 0.5 * (exerciseT + exerciseA);
-			
-			JSONArray dogsArray = new JSONArray();
-			for(Dog dog : owner.getDogs()) {
-				JSONObject dogObj = new JSONObject();
-				
-				int dogRealID = dog.getRealID();
-				String dogBreedAsString = dog.getBreed().name();
-				String dogOwnerNameAsString = dog.getOwner().getNameAsString();
-				String dogOwnerWaitingForNameAsString = dog.isWaitingForPerson() ? dog.getOwnerWaitingFor().getNameAsString() : "";
-				String dogOwnerHeadingForNameAsString = dog.isHeadingForPerson() ? dog.getOwnerHeadingFor().getNameAsString() : "";
-				String dogLocationAsString = dog.getLocationAsString();
-				String ballLocationAsString = dogToBallMap.get(dog).getLocationAsString();				
-				boolean dogIsRunning = dog.isRunning();
-				boolean dogIsWalking = dog.isWalking();
-				boolean dogIsStationary = dog.isStationary();
-				boolean dogIsHeadingForBall = dog.isHeadingForBall();
-				boolean dogIsHeadingForPerson = dog.isHeadingForPerson();
-				boolean dogIsWaitingForPerson = dog.isWaitingForPerson();
-				boolean dogHasBall = dog.hasBall();
-				
-				dogObj.put("breed", dogBreedAsString.substring(0, 1) + dogBreedAsString.substring(1).toLowerCase());
-				dogObj.put("realID", dogRealID);
-				dogObj.put("owner", dogOwnerNameAsString);
-				dogObj.put("ownerWaitingFor", dogOwnerWaitingForNameAsString);
-				dogObj.put("ownerHeadingFor", dogOwnerHeadingForNameAsString);
-				dogObj.put("location", dogLocationAsString);
-				dogObj.put("ballLocation", ballLocationAsString);
-				dogObj.put("isRunning", dogIsRunning);
-				dogObj.put("isWalking", dogIsWalking);
-				dogObj.put("isStationary", dogIsStationary);
-				dogObj.put("isHeadingForBall", dogIsHeadingForBall);
-				dogObj.put("isHeadingForPerson", dogIsHeadingForPerson);
-				dogObj.put("isWaitingForPerson", dogIsWaitingForPerson);
-				dogObj.put("hasBall", dogHasBall);
-				dogObj.put("maxWaitingTime", decimalFormat.format(Dog.MAX_WAITING_TIME));
-				dogObj.put("totalExerciseTime", decimalFormat.format(Dog.TOTAL_EXERCISE_TIME));
-				dogObj.put("totalExerciseCompleted", decimalFormat.format(dog.getExerciseTimeCompleted()));
-				dogObj.put("completedExercise", Dog.TOTAL_EXERCISE_TIME - dog.getExerciseTimeCompleted() <= dataError);
-				dogObj.put("percentageExerciseCompleted", decimalFormat.format(100 * dog.getExerciseTimeCompleted() / Dog.TOTAL_EXERCISE_TIME));
-				
-				dogsArray.put(dogObj);				
-			}
-			
-			ownerObj.put("dogs", dogsArray);
-			ownerObj.put("location", ownerLocationAsString);
-			ownerObj.put("action", ownerCurrentActionAsString);
-			ownerObj.put("actionTimeRemaining", ownerActionTimeRemaining);
-			ownerObj.put("signal", ownerCurrentSignal);
-			ownerObj.put("team", ownerTeam);
-			ownerObj.put("T", decimalFormat.format(exerciseT));
-			ownerObj.put("A", decimalFormat.format(exerciseA));
-			ownerObj.put("score", decimalFormat.format(exerciseScore));
-			
-			if(ownersThatExitedPark.contains(owner))
-				ownerObj.put("exitedPark", true);
-			else
-				ownerObj.put("exitedPark", false);
-						
-			ownersObj.put(ownerNameAsString, ownerObj);			
-		}
-		jsonObj.put("owners", ownersObj);
-
-		return jsonObj.toString();
-	}
-	
 	public static void main(String[] args) throws ClassNotFoundException, InstantiationException, IllegalAccessException, IOException, JSONException {
-		setup();
-		parseCommandLineArguments(args);
-		runSimulation();
+		Simulator simulator = parseCommandLineArguments(args).build();
+		simulator.runBatch();
+		if(simulator.resultStore != null)
+			simulator.resultStore.close();
+		if(!simulator.showGUI)
+			System.exit(0);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package dogs.sim;
+
+import java.util.Arrays;
+
+
+public class SpatialGrid {
+
+	private static final int NONE = -1;
+	private static final double QUERY_MARGIN = 1E-6;
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private double cellSize;
+	private int cellsPerSide;
+	private int[] cellHeads;
+	private int[] entityCells, nextEntities, previousEntities;
+
+	/**
+	 * Uniform spatial hash grid over the park
+	 *
+	 * Entities are kept in intrusive doubly-linked lists per cell, so moving an
+	 * entity that stays in its cell costs nothing and moving it across cells is O(1).
+	 *
+	 * @param cellSize     side length of each cell in meters
+	 * @param numEntities  number of entities that can be stored
+	 *
+	 */
+	public SpatialGrid(double cellSize, int numEntities) {
+		this.cellSize = cellSize;
+		this.cellsPerSide = (int) Math.ceil(ParkLocation.PARK_SIZE / cellSize);
+		this.cellHeads = new int[cellsPerSide * cellsPerSide];
+		this.entityCells = new int[numEntities];
+		this.nextEntities = new int[numEntities];
+		this.previousEntities = new int[numEntities];
+		Arrays.fill(cellHeads, NONE);
+		Arrays.fill(entityCells, NONE);
+	}
+
+	public void move(int entity, double row, double column) {
+		int cell = getCellIndex(row) * cellsPerSide + getCellIndex(column);
+		if(entityCells[entity] == cell)
+			return;
+
+		remove(entity);
+		entityCells[entity] = cell;
+		previousEntities[entity] = NONE;
+		nextEntities[entity] = cellHeads[cell];
+		if(cellHeads[cell] != NONE)
+			previousEntities[cellHeads[cell]] = entity;
+		cellHeads[cell] = entity;
+	}
+
+	public void remove(int entity) {
+		int cell = entityCells[entity];
+		if(cell == NONE)
+			return;
+
+		if(previousEntities[entity] != NONE)
+			nextEntities[previousEntities[entity]] = nextEntities[entity];
+		else
+			cellHeads[cell] = nextEntities[entity];
+		if(nextEntities[entity] != NONE)
+			previousEntities[nextEntities[entity]] = previousEntities[entity];
+		entityCells[entity] = NONE;
+	}
+
+	/**
+	 * Collect all entities in cells that may lie within a range of a location
+	 *
+	 * The candidates are a superset of the entities within range and are returned
+	 * in increasing entity order, so callers can apply the exact range check and
+	 * keep the same first-match semantics as a scan over all entities.
+	 *
+	 * @param row         row of the location
+	 * @param column      column of the location
+	 * @param range       query range in meters
+	 * @param candidates  buffer receiving the candidate entities
+	 * @return            number of candidates written to the buffer
+	 *
+	 */
+	public int getCandidates(double row, double column, double range, int[] candidates) {
+		double paddedRange = range + QUERY_MARGIN;
+		int firstRowCell = getCellIndex(row - paddedRange), lastRowCell = getCellIndex(row + paddedRange);
+		int firstColumnCell = getCellIndex(column - paddedRange), lastColumnCell = getCellIndex(column + paddedRange);
+
+		int numCandidates = 0;
+		for(int rowCell = firstRowCell; rowCell <= lastRowCell; rowCell++)
+			for(int columnCell = firstColumnCell; columnCell <= lastColumnCell; columnCell++)
+				for(int entity = cellHeads[rowCell * cellsPerSide + columnCell]; entity != NONE; entity = nextEntities[entity])
+					candidates[numCandidates++] = entity;
+
+		sortCandidates(candidates, numCandidates);
+		return numCandidates;
+	}
+
+	// Sorts in place, as the library sort can allocate working buffers for longer arrays
+	private static void sortCandidates(int[] candidates, int numCandidates) {
+		if(numCandidates <= INSERTION_SORT_THRESHOLD) {
+			for(int i = 1; i < numCandidates; i++) {
+				int candidate = candidates[i];
+				int j = i - 1;
+				for(; j >= 0 && candidates[j] > candidate; j--)
+					candidates[j + 1] = candidates[j];
+				candidates[j + 1] = candidate;
+			}
+			return;
+		}
+
+		for(int i = numCandidates / 2 - 1; i >= 0; i--)
+			siftDown(candidates, i, numCandidates);
+		for(int end = numCandidates - 1; end > 0; end--) {
+			int largest = candidates[0];
+			candidates[0] = candidates[end];
+			candidates[end] = largest;
+			siftDown(candidates, 0, end);
+		}
+	}
+
+	private static void siftDown(int[] heap, int index, int size) {
+		int value = heap[index];
+		while(2 * index + 1 < size) {
+			int child = 2 * index + 1;
+			if(child + 1 < size && heap[child + 1] > heap[child])
+				child++;
+			if(heap[child] <= value)
+				break;
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = value;
+	}
+
+	private int getCellIndex(double coordinate) {
+		int cellIndex = (int) Math.floor(coordinate / cellSize);
+		return cellIndex < 0 ? 0 : cellIndex >= cellsPerSide ? cellsPerSide - 1 : cellIndex;
+	}
+}
@@ -0,0 +1,159 @@
+package dogs.sim;
+
+import java.util.Arrays;
+
+
+public class TimingWheel {
+
+	private static final int NONE = -1;
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS_PER_LEVEL = 1 << SLOT_BITS;
+	private static final int NUM_LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+
+	private long currentTick;
+	private int size;
+	private int[] slotHeads;
+	private long[] entryTicks;
+	private int[] entrySlots, nextEntries, previousEntries;
+
+	/**
+	 * Hierarchical timing wheel of entity deadlines keyed by sub-step
+	 *
+	 * Every level has 64 slots, and a deadline is kept on the lowest level whose
+	 * slots are as coarse as its distance from the current tick. Slots of a higher
+	 * level are spread over the level below when the wheel reaches them, so that
+	 * scheduling, cancelling and expiring an entity are O(1) amortised. Every entity
+	 * has at most one deadline, and rescheduling it replaces the previous one.
+	 *
+	 * @param capacity  number of entities that can be scheduled
+	 *
+	 */
+	public TimingWheel(int capacity) {
+		this.slotHeads = new int[NUM_LEVELS * SLOTS_PER_LEVEL];
+		this.entryTicks = new long[capacity];
+		this.entrySlots = new int[capacity];
+		this.nextEntries = new int[capacity];
+		this.previousEntries = new int[capacity];
+		Arrays.fill(slotHeads, NONE);
+		Arrays.fill(entrySlots, NONE);
+	}
+
+	public void schedule(int entry, long tick) {
+		cancel(entry);
+		entryTicks[entry] = tick;
+		link(entry);
+		size++;
+	}
+
+	public void cancel(int entry) {
+		if(entrySlots[entry] == NONE)
+			return;
+		unlink(entry);
+		size--;
+	}
+
+	public boolean isScheduled(int entry) {
+		return entrySlots[entry] != NONE;
+	}
+
+	public long getTick(int entry) {
+		return isScheduled(entry) ? entryTicks[entry] : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Find the earliest deadline in the wheel
+	 *
+	 * @return  earliest scheduled tick, or Long.MAX_VALUE if nothing is scheduled
+	 *
+	 */
+	public long getNextTick() {
+		if(size == 0)
+			return Long.MAX_VALUE;
+
+		for(int level = 0; level < NUM_LEVELS; level++) {
+			int shift = level * SLOT_BITS;
+			int firstSlot = (int) ((currentTick >>> shift) & (SLOTS_PER_LEVEL - 1)) + (level == 0 ? 0 : 1);
+			for(int slot = firstSlot; slot < SLOTS_PER_LEVEL; slot++) {
+				int entry = slotHeads[level * SLOTS_PER_LEVEL + slot];
+				if(entry == NONE)
+					continue;
+				long nextTick = Long.MAX_VALUE;
+				for(; entry != NONE; entry = nextEntries[entry])
+					nextTick = Math.min(nextTick, entryTicks[entry]);
+				return nextTick;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Take out an entity whose deadline has been reached
+	 *
+	 * The wheel is turned forward up to the given tick as long as nothing expires,
+	 * so calling this until it returns -1 expires every deadline up to the tick.
+	 *
+	 * @param tick  tick the wheel may be turned to
+	 * @return      an expired entity, or -1 if there is none
+	 *
+	 */
+	public int poll(long tick) {
+		while(true) {
+			if(size == 0) {
+				currentTick = Math.max(currentTick, tick);
+				return NONE;
+			}
+
+			int entry = slotHeads[(int) (currentTick & (SLOTS_PER_LEVEL - 1))];
+			if(entry != NONE) {
+				cancel(entry);
+				return entry;
+			}
+			if(currentTick >= tick)
+				return NONE;
+			currentTick++;
+			cascade();
+		}
+	}
+
+	private void cascade() {
+		for(int level = 1; level < NUM_LEVELS; level++) {
+			int shift = level * SLOT_BITS;
+			if((currentTick & ((1L << shift) - 1)) != 0)
+				return;
+
+			int slot = level * SLOTS_PER_LEVEL + (int) ((currentTick >>> shift) & (SLOTS_PER_LEVEL - 1));
+			int entry = slotHeads[slot];
+			slotHeads[slot] = NONE;
+			while(entry != NONE) {
+				int nextEntry = nextEntries[entry];
+				link(entry);
+				entry = nextEntry;
+			}
+		}
+	}
+
+	// Deadlines that have already passed are kept in the slot of the current tick
+	private void link(int entry) {
+		long tick = Math.max(entryTicks[entry], currentTick);
+		int level = tick == currentTick ? 0 : (63 - Long.numberOfLeadingZeros(tick ^ currentTick)) / SLOT_BITS;
+		int slot = level * SLOTS_PER_LEVEL + (int) ((tick >>> (level * SLOT_BITS)) & (SLOTS_PER_LEVEL - 1));
+
+		entrySlots[entry] = slot;
+		previousEntries[entry] = NONE;
+		nextEntries[entry] = slotHeads[slot];
+		if(slotHeads[slot] != NONE)
+			previousEntries[slotHeads[slot]] = entry;
+		slotHeads[slot] = entry;
+	}
+
+	private void unlink(int entry) {
+		int slot = entrySlots[entry];
+		if(previousEntries[entry] != NONE)
+			nextEntries[previousEntries[entry]] = nextEntries[entry];
+		else
+			slotHeads[slot] = nextEntries[entry];
+		if(nextEntries[entry] != NONE)
+			previousEntries[nextEntries[entry]] = previousEntries[entry];
+		entrySlots[entry] = NONE;
+	}
+}
@@ -0,0 +1,626 @@
+package dogs.sim;
+
+import java.io.*;
+import java.text.DecimalFormat;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+public class Tournament {
+
+	private final List<List<String>> teamMixes;
+	private final List<String> configNames;
+	private final List<Integer> seeds;
+	private final int numWorkers;
+	private int rounds = 3600;
+	private double granularity = 0.01;
+	private ParkEngine.Mode engineMode = ParkEngine.Mode.FIXED;
+	private boolean concurrentDecisions = false;
+	private String outputPath = null;
+	private ResultStore resultStore = null;
+	private ResultCache resultCache = null;
+	private boolean separateProcesses = false;
+	private int gamesPerProcess = 100;
+	private long gameTimeout = 0;
+	private List<String> workerCommand = null;
+	private int numFinishedGames = 0;
+	static final int MAX_GAME_ATTEMPTS = 2;
+
+	/**
+	 * Tournament of every combination of team mix, configuration and seed
+	 *
+	 * Games run on a bounded pool of workers in this process. A game is built on the
+	 * calling thread once a worker is free, so every team is compiled at most once,
+	 * and the classes of the players and the dictionary are read once and shared by
+	 * all games. Each game still has its own park, random generator and players, so
+	 * its results only depend on its seed and not on the number of workers.
+	 *
+	 * @param teamMixes    teams of the owners of each mix, as given to `--owners`
+	 * @param configNames  configuration files of dog breed mixes
+	 * @param seeds        seeds every mix and configuration is played with
+	 * @param numWorkers   number of games running at the same time
+	 *
+	 */
+	public Tournament(List<List<String>> teamMixes, List<String> configNames, List<Integer> seeds, int numWorkers) {
+		if(numWorkers < 1)
+			throw new IllegalArgumentException("The number of tournament workers must be positive!");
+		this.teamMixes = List.copyOf(teamMixes);
+		this.configNames = List.copyOf(configNames);
+		this.seeds = List.copyOf(seeds);
+		this.numWorkers = numWorkers;
+	}
+
+	public void setRounds(int rounds) {
+		this.rounds = rounds;
+	}
+
+	public void setGranularity(double granularity) {
+		this.granularity = granularity;
+	}
+
+	public void setEngineMode(ParkEngine.Mode engineMode) {
+		this.engineMode = engineMode;
+	}
+
+	public void setConcurrentDecisions(boolean concurrentDecisions) {
+		this.concurrentDecisions = concurrentDecisions;
+	}
+
+	public void setOutputPath(String outputPath) {
+		this.outputPath = outputPath;
+	}
+
+	public void setResultStore(ResultStore resultStore) {
+		this.resultStore = resultStore;
+	}
+
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	public void setSeparateProcesses(boolean separateProcesses) {
+		this.separateProcesses = separateProcesses;
+	}
+
+	public void setGamesPerProcess(int gamesPerProcess) {
+		if(gamesPerProcess < 1)
+			throw new IllegalArgumentException("The number of games per worker process must be positive!");
+		this.gamesPerProcess = gamesPerProcess;
+	}
+
+	public void setGameTimeout(long gameTimeout) {
+		if(gameTimeout < 0)
+			throw new IllegalArgumentException("The game timeout cannot be negative!");
+		this.gameTimeout = gameTimeout;
+	}
+
+	// Tests start workers that crash or hang on purpose in place of TournamentWorker
+	void setWorkerCommand(List<String> workerCommand) {
+		this.workerCommand = List.copyOf(workerCommand);
+	}
+
+	/**
+	 * Play every game of the tournament
+	 *
+	 * The results of a game are printed, and written to the output file and the result
+	 * store if there are any, as soon as it finishes; the standings are printed once
+	 * all games finish.
+	 * A game that cannot be built or fails is reported and the others still run.
+	 * With separate processes, every worker is a process of its own playing games one
+	 * at a time, and is replaced after a number of games or when a game crashes it or
+	 * runs out of time. Workers take the next game as soon as they are free, starting
+	 * from the games with the most dogs, so that long games do not hold up the end of
+	 * the tournament. A game that crashes or times out is played once more on a new
+	 * worker before it is reported as failed.
+	 *
+	 * @return  games in the order of team mixes, then configurations, then seeds
+	 *
+	 */
+	public List<Game> run() throws IOException, InterruptedException {
+		List<Game> games = new ArrayList<>();
+		for(List<String> teams : teamMixes)
+			for(String configName : configNames)
+				for(int seed : seeds)
+					games.add(new Game(games.size() + 1, teams, configName, seed));
+		numFinishedGames = 0;
+
+		try(PrintWriter output = outputPath != null ? new PrintWriter(new BufferedWriter(new FileWriter(outputPath))) : null) {
+			if(output != null)
+				output.println("game,teams,config,seed,owner,player,team,score,t,a,completed");
+			if(separateProcesses)
+				playInProcesses(games, output);
+			else
+				playInThreads(games, output);
+		}
+
+		printStandings(games);
+		return games;
+	}
+
+	private void playInThreads(List<Game> games, PrintWriter output) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+		Semaphore freeWorkers = new Semaphore(numWorkers);
+		try {
+			for(Game game : games) {
+				// Games are only built when a worker is free, so that at most one park per worker is held in memory
+				freeWorkers.acquire();
+				Simulator simulator;
+				try {
+					simulator = new Simulator.Builder().setOwners(game.teams).setDogConfig(game.configName).setSeed(game.seed)
+							.setRounds(rounds).setGranularity(granularity).setEngineMode(engineMode).setConcurrentDecisions(concurrentDecisions)
+							.setResultCache(resultCache).build();
+				} catch(IOException | RuntimeException e) {
+					game.error = e;
+					finishGame(game, games.size(), output);
+					freeWorkers.release();
+					continue;
+				}
+				pool.execute(() -> {
+					try {
+						long startTime = System.currentTimeMillis();
+						game.result = simulator.run();
+						game.wallTime = System.currentTimeMillis() - startTime;
+					} catch(Exception e) {
+						game.error = e;
+					} finally {
+						finishGame(game, games.size(), output);
+						freeWorkers.release();
+					}
+				});
+			}
+		} finally {
+			pool.shutdown();
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		}
+	}
+
+	private void playInProcesses(List<Game> games, PrintWriter output) throws InterruptedException {
+		Map<Game, Long> costs = new HashMap<>();
+		for(Game game : games)
+			costs.put(game, estimateCost(game));
+		PriorityBlockingQueue<Game> pendingGames = new PriorityBlockingQueue<>(games.size(),
+				Comparator.comparingLong((Game game) -> -costs.get(game)).thenComparingInt(game -> game.index));
+		pendingGames.addAll(games);
+
+		ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+		ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+		try {
+			for(int i = 0; i < numWorkers; i++)
+				pool.execute(() -> playInProcess(pendingGames, games.size(), output, watchdog));
+		} finally {
+			pool.shutdown();
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+			watchdog.shutdownNow();
+		}
+	}
+
+	// Games failed by a worker go back to the queue, so another worker may take them up once this one is done
+	private void playInProcess(PriorityBlockingQueue<Game> pendingGames, int numGames, PrintWriter output, ScheduledExecutorService watchdog) {
+		WorkerProcess worker = null;
+		Game game;
+		while((game = pendingGames.poll()) != null) {
+			try {
+				if(worker == null)
+					worker = new WorkerProcess(watchdog);
+				JSONObject reply = worker.play(game);
+				if(reply.has("result")) {
+					game.result = SimulationResult.fromJSON(reply.getJSONObject("result"));
+					game.wallTime = reply.getLong("wallTime");
+				}
+				else
+					game.error = new IOException(reply.optString("error"));
+			} catch(IOException | JSONException e) {
+				if(worker != null)
+					worker.destroy();
+				worker = null;
+				if(++game.numAttempts < MAX_GAME_ATTEMPTS) {
+					pendingGames.add(game);
+					continue;
+				}
+				game.error = e;
+			}
+			finishGame(game, numGames, output);
+
+			if(worker != null && worker.expired) {
+				worker.destroy();
+				worker = null;
+			}
+			else if(worker != null && worker.numGames >= gamesPerProcess) {
+				worker.close();
+				worker = null;
+			}
+		}
+		if(worker != null)
+			worker.close();
+	}
+
+	// Games are ranked by the work of a step, which grows with the number of dogs and the number of dogs and owners they are checked against
+	private static long estimateCost(Game game) {
+		File configFile = new File(Simulator.getDefaultProjectPath() + File.separator + "src" + File.separator + "configs" + File.separator + game.configName);
+		int numDogsPerOwner = 1;
+		try(BufferedReader reader = new BufferedReader(new FileReader(configFile))) {
+			String line = reader.readLine();
+			if(line != null)
+				numDogsPerOwner = line.strip().split(" ").length;
+		} catch(IOException e) {}
+		long numDogs = (long) game.teams.size() * numDogsPerOwner;
+		return numDogs * (numDogs + game.teams.size());
+	}
+
+	private class WorkerProcess {
+
+		private final Process process;
+		private final BufferedReader replies;
+		private final PrintWriter requests;
+		private final ScheduledExecutorService watchdog;
+		private int numGames = 0;
+		private boolean expired = false;
+
+		/**
+		 * Process started with the same Java runtime and class path as the tournament
+		 *
+		 * Each worker runs a single simulator thread, so the serial collector keeps a
+		 * worker from starting collector threads for every processor of the machine.
+		 * A worker command set on the tournament replaces the whole command line.
+		 *
+		 * @param watchdog  executor ending games that run out of time
+		 *
+		 */
+		WorkerProcess(ScheduledExecutorService watchdog) throws IOException {
+			String javaPath = ProcessHandle.current().info().command().orElse("java");
+			List<String> command = workerCommand != null ? workerCommand
+					: List.of(javaPath, "-XX:+UseSerialGC", "-cp", System.getProperty("java.class.path"), TournamentWorker.class.getName());
+			this.process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			this.replies = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			this.requests = new PrintWriter(new BufferedWriter(new OutputStreamWriter(process.getOutputStream())));
+			this.watchdog = watchdog;
+		}
+
+		private JSONObject play(Game game) throws IOException, JSONException {
+			numGames++;
+			JSONObject request = new JSONObject();
+			request.put("game", game.index);
+			request.put("teams", game.teams);
+			request.put("config", game.configName);
+			request.put("seed", game.seed);
+			request.put("rounds", rounds);
+			request.put("granularity", granularity);
+			request.put("engine", engineMode.name());
+			request.put("concurrent", concurrentDecisions);
+			if(resultCache != null)
+				request.put("cache", resultCache.getPath());
+			requests.println(request);
+			requests.flush();
+
+			ScheduledFuture<?> timeout = gameTimeout > 0 ? watchdog.schedule(() -> { process.destroyForcibly(); }, gameTimeout, TimeUnit.SECONDS) : null;
+			String reply;
+			try {
+				reply = replies.readLine();
+			} finally {
+				if(timeout != null)
+					timeout.cancel(false);
+			}
+			// A reply read just before the watchdog ended the worker still counts, and only the worker is replaced
+			expired = timeout != null && timeout.isDone() && !timeout.isCancelled();
+			if(reply == null)
+				throw new IOException(expired ? "The game ran out of time!" : "The worker process crashed!");
+
+			JSONObject replyJSON = new JSONObject(reply);
+			if(replyJSON.getInt("game") != game.index)
+				throw new IOException("The worker process replied for another game!");
+			return replyJSON;
+		}
+
+		// Closing its input lets the worker finish on its own, and only a worker that does not is ended
+		private void close() {
+			requests.close();
+			try {
+				if(!process.waitFor(10, TimeUnit.SECONDS))
+					process.destroyForcibly();
+			} catch(InterruptedException e) {
+				process.destroyForcibly();
+			}
+		}
+
+		private void destroy() {
+			process.destroyForcibly();
+		}
+	}
+
+	private synchronized void finishGame(Game game, int numGames, PrintWriter output) {
+		numFinishedGames++;
+		String gameName = "Game " + game.index + " (" + numFinishedGames + "/" + numGames + " finished) " + game.teams + " on " + game.configName + " with seed " + game.seed;
+		if(game.result == null) {
+			System.out.println(gameName + " could not be played: " + game.error.getMessage());
+			return;
+		}
+
+		DecimalFormat decimalFormat = new DecimalFormat("######.####");
+		StringBuilder scores = new StringBuilder();
+		for(SimulationResult.OwnerResult ownerResult : game.result.getOwnerResults()) {
+			scores.append(scores.length() == 0 ? ": " : ", ").append(ownerResult.getPlayerName()).append(" ").append(decimalFormat.format(ownerResult.getScore()));
+			if(output != null)
+				output.println(game.index + "," + String.join(" ", game.teams) + "," + game.configName + "," + game.seed + "," + ownerResult.getOwnerName() + "," +
+						ownerResult.getPlayerName() + "," + ownerResult.getTeamName() + "," + ownerResult.getScore() + "," +
+						ownerResult.getExerciseT() + "," + ownerResult.getExerciseA() + "," + game.result.isAllExerciseCompleted());
+		}
+		if(output != null)
+			output.flush();
+		System.out.println(gameName + scores);
+
+		if(resultStore != null) {
+			try {
+				resultStore.append(game.configName, game.seed, rounds, granularity, game.wallTime, game.result);
+			} catch(IOException e) {
+				System.out.println("Game " + game.index + " could not be stored: " + e.getMessage());
+			}
+		}
+	}
+
+	// Standings are summed in the order of the games rather than the order they finish in, so that they never depend on scheduling
+	private void printStandings(List<Game> games) {
+		Map<String, Standing> standings = new HashMap<>();
+		int numPlayedGames = 0;
+		for(Game game : games) {
+			if(game.result == null)
+				continue;
+			numPlayedGames++;
+			Set<String> gameTeams = new HashSet<>();
+			for(SimulationResult.OwnerResult ownerResult : game.result.getOwnerResults()) {
+				String teamName = ownerResult.getTeamName();
+				Standing standing = standings.computeIfAbsent(teamName, Standing::new);
+				if(gameTeams.add(teamName))
+					standing.numGames++;
+				standing.numOwners++;
+				standing.totalScore += ownerResult.getScore();
+				standing.totalExerciseT += ownerResult.getExerciseT();
+				standing.totalExerciseA += ownerResult.getExerciseA();
+			}
+		}
+
+		List<Standing> rankedStandings = new ArrayList<>(standings.values());
+		rankedStandings.sort(Comparator.comparingDouble((Standing standing) -> standing.totalScore / standing.numOwners).thenComparing(standing -> standing.teamName));
+
+		System.out.println();
+		System.out.println("Standings after " + numPlayedGames + " of " + games.size() + " games (lower scores are better):");
+		System.out.println(String.format("%-12s %8s %8s %14s %14s %14s", "Team", "Games", "Owners", "Mean score", "Mean T", "Mean A"));
+		for(Standing standing : rankedStandings)
+			System.out.println(String.format("%-12s %8d %8d %14.4f %14.4f %14.4f", standing.teamName, standing.numGames, standing.numOwners,
+					standing.totalScore / standing.numOwners, standing.totalExerciseT / standing.numOwners, standing.totalExerciseA / standing.numOwners));
+	}
+
+	private static List<String> getAllConfigNames() {
+		File configDirectory = new File(Simulator.getDefaultProjectPath() + File.separator + "src" + File.separator + "configs");
+		List<String> configNames = new ArrayList<>();
+		File[] configFiles = configDirectory.listFiles();
+		if(configFiles != null)
+			for(File configFile : configFiles)
+				if(configFile.getName().endsWith(".dat"))
+					configNames.add(configFile.getName());
+		Collections.sort(configNames);
+		return configNames;
+	}
+
+	public static class Game {
+
+		private final int index;
+		private final List<String> teams;
+		private final String configName;
+		private final int seed;
+		private volatile SimulationResult result = null;
+		private volatile Exception error = null;
+		private volatile long wallTime = 0;
+		private int numAttempts = 0;
+
+		private Game(int index, List<String> teams, String configName, int seed) {
+			this.index = index;
+			this.teams = List.copyOf(teams);
+			this.configName = configName;
+			this.seed = seed;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public List<String> getTeams() {
+			return teams;
+		}
+
+		public String getConfigName() {
+			return configName;
+		}
+
+		public int getSeed() {
+			return seed;
+		}
+
+		public SimulationResult getResult() {
+			return result;
+		}
+
+		public Exception getError() {
+			return error;
+		}
+
+		public long getWallTime() {
+			return wallTime;
+		}
+	}
+
+	private static class Standing {
+
+		private final String teamName;
+		private int numGames = 0, numOwners = 0;
+		private double totalScore = 0, totalExerciseT = 0, totalExerciseA = 0;
+
+		private Standing(String teamName) {
+			this.teamName = teamName;
+		}
+	}
+
+	private static Tournament parseCommandLineArguments(String[] args) throws IOException {
+		List<List<String>> teamMixes = new ArrayList<>();
+		List<String> configNames = new ArrayList<>();
+		List<Integer> seeds = new ArrayList<>();
+		int seedCount = 1;
+		int numWorkers = Runtime.getRuntime().availableProcessors();
+		int rounds = 3600;
+		double granularity = 0.01;
+		ParkEngine.Mode engineMode = ParkEngine.Mode.FIXED;
+		boolean concurrentDecisions = false;
+		String outputPath = null;
+		String storePath = null;
+		String cachePath = null;
+		boolean separateProcesses = false;
+		int gamesPerProcess = 100;
+		long gameTimeout = 0;
+
+		for(int i = 0; i < args.length; i++) {
+            switch (args[i].charAt(0)) {
+                case '-':
+                    if(args[i].equals("-n") || args[i].equals("--owners")) {
+                        List<String> teams = new ArrayList<>();
+                        while(i + 1 < args.length && args[i + 1].charAt(0) != '-') {
+                            i++;
+                            teams.add(args[i]);
+                        }
+                        if(teams.isEmpty())
+                            throw new IllegalArgumentException("The owners of a team mix are missing!");
+                        teamMixes.add(teams);
+                    }
+                    else if(args[i].equals("-d") || args[i].equals("--dogs")) {
+                        while(i + 1 < args.length && args[i + 1].charAt(0) != '-') {
+                            i++;
+                            configNames.add(args[i]);
+                        }
+                    }
+                    else if(args[i].equals("-s") || args[i].equals("--seeds")) {
+                        while(i + 1 < args.length && args[i + 1].charAt(0) != '-') {
+                            i++;
+                            seeds.add(Integer.parseInt(args[i]));
+                        }
+                    }
+                    else if(args[i].equals("-S") || args[i].equals("--seed-count")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The number of seeds is not specified!");
+                        seedCount = Integer.parseInt(args[i]);
+                        if(seedCount < 1)
+                            throw new IllegalArgumentException("The number of seeds must be positive!");
+                    }
+                    else if(args[i].equals("-W") || args[i].equals("--workers")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The number of tournament workers is not specified!");
+                        numWorkers = Integer.parseInt(args[i]);
+                    }
+                    else if(args[i].equals("-O") || args[i].equals("--output")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The output file path is missing!");
+                        outputPath = args[i];
+                    }
+                    else if(args[i].equals("-q") || args[i].equals("--store")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The result store path is missing!");
+                        storePath = args[i];
+                    }
+                    else if(args[i].equals("-p") || args[i].equals("--cache")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The result cache path is missing!");
+                        cachePath = args[i];
+                    }
+                    else if(args[i].equals("-P") || args[i].equals("--processes"))
+                        separateProcesses = true;
+                    else if(args[i].equals("-G") || args[i].equals("--games-per-process")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The number of games per worker process is not specified!");
+                        gamesPerProcess = Integer.parseInt(args[i]);
+                    }
+                    else if(args[i].equals("-T") || args[i].equals("--timeout")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The game timeout is not specified!");
+                        gameTimeout = Long.parseLong(args[i]);
+                    }
+                    else if(args[i].equals("-r") || args[i].equals("--rounds")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The number of rounds is not specified!");
+                        rounds = Integer.parseInt(args[i]);
+                    }
+                    else if(args[i].equals("-y") || args[i].equals("--granularity")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The simulation granularity is not specified!");
+                        granularity = Double.parseDouble(args[i]);
+                    }
+                    else if(args[i].equals("-e") || args[i].equals("--engine")) {
+                    	i++;
+                        if(i == args.length)
+                            throw new IllegalArgumentException("The simulation engine is not specified!");
+                        try {
+                            engineMode = ParkEngine.Mode.valueOf(args[i].toUpperCase());
+                        } catch(IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Unknown simulation engine \"" + args[i] + "\"!");
+                        }
+                    }
+                    else if(args[i].equals("-c") || args[i].equals("--concurrent"))
+                        concurrentDecisions = true;
+                    else
+                        throw new IllegalArgumentException("Unknown argument \"" + args[i] + "\"!");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument \"" + args[i] + "\"!");
+            }
+        }
+
+		if(teamMixes.isEmpty())
+			throw new IllegalArgumentException("You must specify at least one team mix.");
+		if(configNames.isEmpty())
+			configNames = getAllConfigNames();
+		if(seeds.isEmpty())
+			seeds.add(42);
+
+		List<Integer> allSeeds = new ArrayList<>();
+		for(int seed : seeds)
+			for(int i = 0; i < seedCount; i++)
+				allSeeds.add(seed + i);
+
+		Tournament tournament = new Tournament(teamMixes, configNames, allSeeds, numWorkers);
+		tournament.setRounds(rounds);
+		tournament.setGranularity(granularity);
+		tournament.setEngineMode(engineMode);
+		tournament.setConcurrentDecisions(concurrentDecisions);
+		tournament.setOutputPath(outputPath);
+		tournament.setSeparateProcesses(separateProcesses);
+		tournament.setGamesPerProcess(gamesPerProcess);
+		tournament.setGameTimeout(gameTimeout);
+		if(storePath != null)
+			tournament.setResultStore(new ResultStore(storePath));
+		if(cachePath != null)
+			tournament.setResultCache(new ResultCache(cachePath));
+		return tournament;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Tournament tournament = parseCommandLineArguments(args);
+		tournament.run();
+		if(tournament.resultStore != null)
+			tournament.resultStore.close();
+		System.exit(0);
+	}
+}
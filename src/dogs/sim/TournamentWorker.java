@@ -0,0 +1,61 @@
+package dogs.sim;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+public class TournamentWorker {
+
+	/**
+	 * Process playing the games a tournament hands out to it
+	 *
+	 * Every line of the standard input is a game to play, and the result or the error
+	 * of the game is written back as a line of the standard output, one game at a
+	 * time. The worker exits once its standard input is closed.
+	 *
+	 */
+	private TournamentWorker() {
+	}
+
+	private static JSONObject playGame(JSONObject request) throws JSONException {
+		JSONObject reply = new JSONObject();
+		reply.put("game", request.getInt("game"));
+		try {
+			List<String> teams = new ArrayList<>();
+			JSONArray teamsJSON = request.getJSONArray("teams");
+			for(int i = 0; i < teamsJSON.length(); i++)
+				teams.add(teamsJSON.getString(i));
+
+			Simulator.Builder builder = new Simulator.Builder().setOwners(teams).setDogConfig(request.getString("config")).setSeed(request.getInt("seed"))
+					.setRounds(request.getInt("rounds")).setGranularity(request.getDouble("granularity"))
+					.setEngineMode(ParkEngine.Mode.valueOf(request.getString("engine"))).setConcurrentDecisions(request.getBoolean("concurrent"));
+			if(request.has("cache"))
+				builder.setResultCache(new ResultCache(request.getString("cache")));
+			Simulator simulator = builder.build();
+			long startTime = System.currentTimeMillis();
+			SimulationResult result = simulator.run();
+			reply.put("wallTime", System.currentTimeMillis() - startTime);
+			reply.put("result", result.toJSON());
+		} catch(Exception e) {
+			reply.put("error", String.valueOf(e.getMessage()));
+		}
+		return reply;
+	}
+
+	public static void main(String[] args) throws IOException, JSONException {
+		// Players may print to the standard output, so only replies are written to it
+		PrintStream replies = new PrintStream(new FileOutputStream(FileDescriptor.out), true);
+		System.setOut(System.err);
+
+		BufferedReader requests = new BufferedReader(new InputStreamReader(System.in));
+		String request;
+		while((request = requests.readLine()) != null)
+			replies.println(playGame(new JSONObject(request)));
+		System.exit(0);
+	}
+}
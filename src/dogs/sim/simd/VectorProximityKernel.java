@@ -0,0 +1,40 @@
+package dogs.sim.simd;
+
+import dogs.sim.ProximityKernel;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+public class VectorProximityKernel extends ProximityKernel {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * Proximity filter comparing squared distances across vector lanes
+	 *
+	 * Coordinates of the candidates are gathered a full vector at a time, and the
+	 * candidates left over at the end are checked one at a time. This class needs the
+	 * jdk.incubator.vector module both to compile and to run.
+	 *
+	 */
+	public VectorProximityKernel() {
+	}
+
+	@Override
+	public int filterWithin(double row, double column, double[] rows, double[] columns, int[] candidates, int numCandidates, double squaredBound) {
+		int numKept = 0;
+		int vectorEnd = SPECIES.loopBound(numCandidates);
+		for(int i = 0; i < vectorEnd; i += SPECIES.length()) {
+			DoubleVector deltaRows = DoubleVector.fromArray(SPECIES, rows, 0, candidates, i).sub(row);
+			DoubleVector deltaColumns = DoubleVector.fromArray(SPECIES, columns, 0, candidates, i).sub(column);
+			VectorMask<Double> within = deltaRows.mul(deltaRows).add(deltaColumns.mul(deltaColumns)).compare(VectorOperators.LE, squaredBound);
+
+			// Candidates are only moved back, so the lanes still to be read are never overwritten
+			for(long laneBits = within.toLong(); laneBits != 0; laneBits &= laneBits - 1)
+				candidates[numKept++] = candidates[i + Long.numberOfTrailingZeros(laneBits)];
+		}
+		return filterWithin(row, column, rows, columns, candidates, numKept, vectorEnd, numCandidates, squaredBound);
+	}
+}
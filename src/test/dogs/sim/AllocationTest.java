@@ -0,0 +1,47 @@
+package dogs.sim;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+
+public class AllocationTest {
+
+	private static final int WARM_UP_ROUNDS = 1000;
+	private static final int MEASURED_ROUNDS = 500;
+
+	/**
+	 * Check that the sequential fixed engine allocates nothing once warmed up
+	 *
+	 * A park of 16 owners with two dogs each plays catch for the warm-up rounds, and
+	 * the bytes the thread allocates while advancing the engine over the rounds after
+	 * them are counted. Balls are thrown between rounds, outside of the count, as the
+	 * simulator applies directives between engine advances.
+	 *
+	 */
+	public static void main(String[] args) {
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadID = Thread.currentThread().getId();
+
+		ParkState state = TestParks.createPark(16, 2, 30.0);
+		ParkEngine engine = new ParkEngine(state, ParkEngine.Mode.FIXED, TestParks.INVERSE_GRANULARITY, 1);
+		Random random = new Random(42);
+
+		long allocatedBytes = 0;
+		int lastStep = 0;
+		for(int round = 1; round <= WARM_UP_ROUNDS + MEASURED_ROUNDS; round++) {
+			state.startRound(round);
+			TestParks.throwBalls(state, random);
+
+			long allocatedBytesBefore = threadMXBean.getThreadAllocatedBytes(threadID);
+			lastStep = TestParks.runRound(engine, lastStep, round);
+			long allocatedBytesAfter = threadMXBean.getThreadAllocatedBytes(threadID);
+			if(round > WARM_UP_ROUNDS)
+				allocatedBytes += allocatedBytesAfter - allocatedBytesBefore;
+		}
+		engine.shutdown();
+
+		if(allocatedBytes != 0)
+			throw new AssertionError("The engine allocated " + allocatedBytes + " bytes over " + MEASURED_ROUNDS + " warmed-up rounds instead of 0.");
+		System.out.println("AllocationTest passed: no bytes allocated over " + MEASURED_ROUNDS + " warmed-up rounds.");
+	}
+}
@@ -0,0 +1,104 @@
+package dogs.sim;
+
+import java.util.Arrays;
+
+
+public class DoubleBufferTest {
+
+	private static final int NUM_ROUNDS = 300;
+
+	// Owner pacing every round, listed after the owners whose dogs it draws in, and owning no dogs of its own
+	private static final int PACING_OWNER = 3;
+
+	// Dogs returning to a moving owner listed no later than their own, when that owner paces as well
+	private static final int OWN_OWNER_FOLLOWER = 0, EARLIER_OWNER_FOLLOWER = 3;
+
+	/**
+	 * Check that double buffering only changes the paths of dogs following earlier-listed moving owners
+	 *
+	 * Without double buffering, a dog returning to a moving owner listed no later
+	 * than its own reads where that owner is after the sub-step, and every other dog
+	 * reads where the owner was before it, so the two runs must match exactly
+	 * unless some dog returns to an earlier-listed moving owner. In the park here a
+	 * dog fetches its ball next to an owner pacing back and forth, who is listed
+	 * after that dog's owner; the second case makes a later-listed dog fetch next to
+	 * the pacing owner as well, and makes the first dog's own owner pace.
+	 *
+	 */
+	public static void main(String[] args) {
+		double[][] legacyPaths = runPark(false, false);
+		double[][] doubleBufferedPaths = runPark(true, false);
+		for(int dogIndex = 0; dogIndex < legacyPaths.length; dogIndex++)
+			if(!Arrays.equals(legacyPaths[dogIndex], doubleBufferedPaths[dogIndex]))
+				throw new AssertionError("Dog " + dogIndex + " follows no earlier-listed moving owner, but its path changed with double buffering.");
+
+		legacyPaths = runPark(false, true);
+		doubleBufferedPaths = runPark(true, true);
+		for(int dogIndex = 0; dogIndex < legacyPaths.length; dogIndex++) {
+			boolean follower = dogIndex == OWN_OWNER_FOLLOWER || dogIndex == EARLIER_OWNER_FOLLOWER;
+			if(follower == Arrays.equals(legacyPaths[dogIndex], doubleBufferedPaths[dogIndex]))
+				throw new AssertionError("Dog " + dogIndex + (follower ? " follows an earlier-listed moving owner, but its path did not change" : " follows no earlier-listed moving owner, but its path changed") + " with double buffering.");
+		}
+		System.out.println("DoubleBufferTest passed: only dogs following earlier-listed moving owners changed paths over " + NUM_ROUNDS + " rounds.");
+	}
+
+	/**
+	 * Play catch in a park of five owners
+	 *
+	 * Owner 0 throws towards the pacing owner 3, owner 1 throws away from everyone,
+	 * owner 2 never throws, and owner 4 throws away from everyone, or towards the
+	 * pacing owner when there are followers, in which case owner 0 paces as well.
+	 *
+	 * @param doubleBuffered  whether dogs read owner locations from before the sub-step
+	 * @param withFollowers   whether dogs return to earlier-listed moving owners
+	 * @return                location of every dog at the end of every round, by dog
+	 *
+	 */
+	private static double[][] runPark(boolean doubleBuffered, boolean withFollowers) {
+		ParkState state = new ParkState(TestParks.INVERSE_GRANULARITY);
+		TestParks.addOwner(state, 20.0, 20.0, 1);
+		TestParks.addOwner(state, 20.0, 80.0, 1);
+		TestParks.addOwner(state, 80.0, 20.0, 1);
+		TestParks.addOwner(state, 45.0, 45.0, 0);
+		TestParks.addOwner(state, 70.0, 70.0, 1);
+		double[][] throwLocations = {{47.0, 43.0}, {5.0, 80.0}, null, withFollowers ? new double[] {43.0, 47.0} : new double[] {85.0, 85.0}};
+
+		ParkEngine engine = new ParkEngine(state, ParkEngine.Mode.FIXED, TestParks.INVERSE_GRANULARITY, 1);
+		engine.setDoubleBuffered(doubleBuffered);
+
+		double[][] paths = new double[state.getNumDogs()][2 * NUM_ROUNDS];
+		int numRoundsDrawnIn = 0;
+		int lastStep = 0;
+		for(int round = 1; round <= NUM_ROUNDS; round++) {
+			state.startRound(round);
+			for(int dogIndex = 0; dogIndex < state.getNumDogs(); dogIndex++) {
+				Dog dog = state.getDog(dogIndex);
+				if(throwLocations[dogIndex] != null && dog.isWaitingForItsOwner() && dog.hasBall())
+					TestParks.throwBall(dog, throwLocations[dogIndex][0], throwLocations[dogIndex][1]);
+				else if(withFollowers && dogIndex == OWN_OWNER_FOLLOWER)
+					pace(state, dog.getOwner().getIndex(), 20.0, round);
+			}
+			pace(state, PACING_OWNER, 45.0, round);
+
+			lastStep = TestParks.runRound(engine, lastStep, round);
+			for(int dogIndex = 0; dogIndex < state.getNumDogs(); dogIndex++) {
+				paths[dogIndex][2 * (round - 1)] = state.dogRows[dogIndex];
+				paths[dogIndex][2 * (round - 1) + 1] = state.dogColumns[dogIndex];
+			}
+			if(state.dogOwnersHeadingFor[0] == PACING_OWNER)
+				numRoundsDrawnIn++;
+		}
+		engine.shutdown();
+
+		// Dog 0 returning to the pacing owner is what makes the first case meaningful
+		if(numRoundsDrawnIn == 0)
+			throw new AssertionError("Dog 0 never returned to the pacing owner in " + NUM_ROUNDS + " rounds.");
+		return paths;
+	}
+
+	// Owners pace 4 meters along their row around a column, turning every 4 rounds, so they are always within 5 meters of where they head
+	private static void pace(ParkState state, int ownerIndex, double column, int round) {
+		double turn = (round / 4) % 2 == 0 ? 2.0 : -2.0;
+		TestParks.moveOwner(state, ownerIndex, state.ownerRows[ownerIndex], column + turn);
+	}
+}
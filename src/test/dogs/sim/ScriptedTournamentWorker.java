@@ -0,0 +1,60 @@
+package dogs.sim;
+
+import java.io.*;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import dogs.sim.DogReference.Breed;
+
+
+// Worker process for TournamentTest, which replies without simulating and crashes or hangs on the games it is told to
+public class ScriptedTournamentWorker {
+
+	// Seeds of games that crash their worker or hang on their first attempt, and of games that crash it on every attempt
+	static final int CRASH_ONCE_SEED = 2, HANG_ONCE_SEED = 3, CRASH_ALWAYS_SEED = 4;
+
+	static final String PLAYED_FILE = "played.txt";
+
+	/**
+	 * Play the games of a tournament as TournamentWorker would
+	 *
+	 * Every game is recorded in the played file of the given directory, as the
+	 * process, the game and the number of owners, before the worker acts on it, and a
+	 * marker file tells later workers that a game has already had its first attempt.
+	 *
+	 * @param args  directory of the played and marker files
+	 *
+	 */
+	public static void main(String[] args) throws IOException, JSONException, InterruptedException {
+		File directory = new File(args[0]);
+		PrintStream replies = new PrintStream(new FileOutputStream(FileDescriptor.out), true);
+		BufferedReader requests = new BufferedReader(new InputStreamReader(System.in));
+		String line;
+		while((line = requests.readLine()) != null) {
+			JSONObject request = new JSONObject(line);
+			int game = request.getInt("game");
+			int seed = request.getInt("seed");
+			int numOwners = request.getJSONArray("teams").length();
+			try(PrintWriter played = new PrintWriter(new FileWriter(new File(directory, PLAYED_FILE), true))) {
+				played.println(ProcessHandle.current().pid() + " " + game + " " + numOwners);
+			}
+
+			boolean firstAttempt = new File(directory, "attempted-" + game).createNewFile();
+			if(seed == CRASH_ALWAYS_SEED || seed == CRASH_ONCE_SEED && firstAttempt)
+				System.exit(1);
+			if(seed == HANG_ONCE_SEED && firstAttempt)
+				Thread.sleep(Long.MAX_VALUE);
+
+			SimulationResult.OwnerResult ownerResult = new SimulationResult.OwnerResult("Alice", request.getJSONArray("teams").getString(0) + "_1", seed, seed, seed,
+					List.of(new SimulationResult.DogResult(Breed.LABRADOR, 1, 0.0)));
+			JSONObject reply = new JSONObject();
+			reply.put("game", game);
+			reply.put("wallTime", 0);
+			reply.put("result", new SimulationResult(seed, false, List.of(ownerResult), List.of()).toJSON());
+			replies.println(reply);
+		}
+		System.exit(0);
+	}
+}
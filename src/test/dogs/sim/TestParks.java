@@ -0,0 +1,125 @@
+package dogs.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import dogs.sim.Directive.Instruction;
+import dogs.sim.DogReference.Breed;
+import dogs.sim.Owner.OwnerName;
+
+
+// Parks built and played without players, for tests that drive the engine directly
+class TestParks {
+
+	static final int INVERSE_GRANULARITY = 100;
+
+	/**
+	 * Park with owners standing on a grid and their dogs waiting next to them with their balls
+	 *
+	 * @param numOwners        number of owners
+	 * @param numDogsPerOwner  number of dogs of every owner, of every breed in turn
+	 * @param spacing          distance in meters between neighbouring owners
+	 * @return                 park state counting INVERSE_GRANULARITY ticks per second
+	 *
+	 */
+	static ParkState createPark(int numOwners, int numDogsPerOwner, double spacing) {
+		ParkState state = new ParkState(INVERSE_GRANULARITY);
+		int ownersPerRow = (int) Math.ceil(Math.sqrt(numOwners));
+		for(int i = 0; i < numOwners; i++)
+			addOwner(state, 20.0 + spacing * (i / ownersPerRow), 20.0 + spacing * (i % ownersPerRow), numDogsPerOwner);
+		return state;
+	}
+
+	/**
+	 * Add an owner with its dogs waiting next to it with their balls
+	 *
+	 * @param state    park state to add the owner to
+	 * @param row      row of the owner
+	 * @param column   column of the owner
+	 * @param numDogs  number of dogs of the owner, of every breed in turn
+	 * @return         owner added
+	 *
+	 */
+	static Owner addOwner(ParkState state, double row, double column, int numDogs) {
+		Owner owner = new Owner(state, OwnerName.values()[state.getNumOwners()]);
+		owner.setLocation(row, column);
+
+		List<Dog> dogs = new ArrayList<>();
+		for(int j = 0; j < numDogs; j++) {
+			Dog dog = new Dog(Breed.values()[j % Breed.values().length], owner, j / Breed.values().length + 1);
+			dog.setLocation(row + 1.0, column);
+			Ball ball = new Ball(dog);
+			ball.setLocation(row + 1.0, column);
+			dogs.add(dog);
+		}
+		owner.setDogs(dogs);
+		return owner;
+	}
+
+	// Every dog waiting for its own owner with its ball has the ball thrown up to 40 meters away, as a THROW_BALL directive would
+	static void throwBalls(ParkState state, Random random) {
+		for(int dogIndex = 0; dogIndex < state.getNumDogs(); dogIndex++) {
+			Dog dog = state.getDog(dogIndex);
+			if(!dog.isWaitingForItsOwner() || !dog.hasBall())
+				continue;
+			Owner owner = dog.getOwner();
+			double distance = 10.0 + 30.0 * random.nextDouble();
+			double angle = 2 * Math.PI * random.nextDouble();
+			double row = ParkState.clampToPark(state.ownerRows[owner.getIndex()] + distance * Math.sin(angle));
+			double column = ParkState.clampToPark(state.ownerColumns[owner.getIndex()] + distance * Math.cos(angle));
+			throwBall(dog, row, column);
+		}
+	}
+
+	// The owner of a dog waiting for it with its ball throws the ball to a location, as a THROW_BALL directive would
+	static void throwBall(Dog dog, double row, double column) {
+		dog.getOwner().setCurrentAction(Instruction.THROW_BALL);
+		dog.setHeadingForBall();
+		dog.getBall().setLocation(row, column);
+	}
+
+	// An owner heads for a location within 5 meters, taking its waiting dogs along and sending other dogs back, as a MOVE directive would
+	static void moveOwner(ParkState state, int ownerIndex, double row, double column) {
+		state.getOwner(ownerIndex).setCurrentAction(Instruction.MOVE);
+		state.setOwnerMoving(ownerIndex, true);
+		state.ownerTargetRows[ownerIndex] = row;
+		state.ownerTargetColumns[ownerIndex] = column;
+
+		for(int dogIndex = 0; dogIndex < state.numDogs; dogIndex++) {
+			if(state.dogOwnersWaitingFor[dogIndex] != ownerIndex)
+				continue;
+			if(state.dogOwners[dogIndex] != ownerIndex) {
+				state.setDogHeadingForPerson(dogIndex, state.dogOwners[dogIndex]);
+				continue;
+			}
+
+			double dogOldRow = state.dogRows[dogIndex];
+			double dogOldColumn = state.dogColumns[dogIndex];
+			double distance = ParkEngine.getDistance(dogOldRow, dogOldColumn, state.ownerRows[ownerIndex], state.ownerColumns[ownerIndex]);
+			double dogNewRow = distance == 0 ? dogOldRow : dogOldRow + (row - dogOldRow) * (distance - 1) / distance;
+			double dogNewColumn = distance == 0 ? dogOldColumn : dogOldColumn + (column - dogOldColumn) * (distance - 1) / distance;
+
+			state.setDogMoving(dogIndex, true);
+			state.dogTargetRows[dogIndex] = ParkState.clampToPark(dogNewRow);
+			state.dogTargetColumns[dogIndex] = ParkState.clampToPark(dogNewColumn);
+		}
+	}
+
+	/**
+	 * Advance the engine to the end of a round, as the simulator does between decisions
+	 *
+	 * @param engine    engine of the park
+	 * @param lastStep  last sub-step already run
+	 * @param round     round to run
+	 * @return          last sub-step of the round
+	 *
+	 */
+	static int runRound(ParkEngine engine, int lastStep, int round) {
+		while(lastStep < round * INVERSE_GRANULARITY) {
+			int firstStep = lastStep + 1;
+			lastStep += engine.advance(firstStep, INVERSE_GRANULARITY - (firstStep - 1) % INVERSE_GRANULARITY);
+		}
+		return lastStep;
+	}
+}
@@ -0,0 +1,92 @@
+package dogs.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+
+public class TournamentTest {
+
+	private static final int GAMES_PER_PROCESS = 2;
+	private static final long GAME_TIMEOUT = 2;
+
+	/**
+	 * Check how a tournament hands games out to worker processes
+	 *
+	 * A single scripted worker at a time plays team mixes of one to three owners,
+	 * with seeds whose games are played normally, a seed whose game crashes its
+	 * worker once, one whose game hangs once until the timeout ends it, and one whose
+	 * game crashes it every time. Every game must
+	 * be sent out in order of decreasing number of owners, workers must be replaced
+	 * after the set number of games or when a game crashes or hangs them, and only
+	 * the game crashing every time may fail, after as many attempts as allowed.
+	 *
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		File directory = Files.createTempDirectory("tournament-test").toFile();
+		List<List<String>> teamMixes = List.of(List.of("random"), List.of("random", "random", "random"), List.of("random", "random"));
+		List<Integer> seeds = List.of(1, 5, 6, ScriptedTournamentWorker.CRASH_ONCE_SEED, ScriptedTournamentWorker.HANG_ONCE_SEED, ScriptedTournamentWorker.CRASH_ALWAYS_SEED);
+		Tournament tournament = new Tournament(teamMixes, List.of("scripted.dat"), seeds, 1);
+		tournament.setSeparateProcesses(true);
+		tournament.setGamesPerProcess(GAMES_PER_PROCESS);
+		tournament.setGameTimeout(GAME_TIMEOUT);
+		String javaPath = ProcessHandle.current().info().command().orElse("java");
+		tournament.setWorkerCommand(List.of(javaPath, "-cp", System.getProperty("java.class.path"), ScriptedTournamentWorker.class.getName(), directory.getPath()));
+		List<Tournament.Game> games = tournament.run();
+
+		Map<Integer, Tournament.Game> gamesByIndex = new HashMap<>();
+		for(Tournament.Game game : games) {
+			gamesByIndex.put(game.getIndex(), game);
+			boolean shouldFail = game.getSeed() == ScriptedTournamentWorker.CRASH_ALWAYS_SEED;
+			if(shouldFail != (game.getResult() == null))
+				throw new AssertionError("Game " + game.getIndex() + " with seed " + game.getSeed() + (shouldFail ? " was played although its worker always crashes." : " failed: " + game.getError()));
+		}
+
+		List<String> played = Files.readAllLines(new File(directory, ScriptedTournamentWorker.PLAYED_FILE).toPath());
+		List<Long> workers = new ArrayList<>();
+		Map<Long, List<Integer>> gamesByWorker = new HashMap<>();
+		Map<Integer, Set<Long>> workersByGame = new HashMap<>();
+		int lastNumOwners = Integer.MAX_VALUE;
+		for(String line : played) {
+			String[] fields = line.split(" ");
+			long worker = Long.parseLong(fields[0]);
+			int gameIndex = Integer.parseInt(fields[1]);
+			int numOwners = Integer.parseInt(fields[2]);
+
+			if(numOwners > lastNumOwners)
+				throw new AssertionError("Game " + gameIndex + " with " + numOwners + " owners was sent out after a game with " + lastNumOwners + " owners.");
+			lastNumOwners = numOwners;
+
+			if(!gamesByWorker.containsKey(worker))
+				workers.add(worker);
+			else if(workers.get(workers.size() - 1).longValue() != worker)
+				throw new AssertionError("Worker " + worker + " was handed games again after another worker started.");
+			gamesByWorker.computeIfAbsent(worker, key -> new ArrayList<>()).add(gameIndex);
+			workersByGame.computeIfAbsent(gameIndex, key -> new HashSet<>()).add(worker);
+		}
+
+		for(Tournament.Game game : games) {
+			int seed = game.getSeed();
+			int expectedAttempts = seed == ScriptedTournamentWorker.CRASH_ALWAYS_SEED ? Tournament.MAX_GAME_ATTEMPTS
+					: seed == ScriptedTournamentWorker.CRASH_ONCE_SEED || seed == ScriptedTournamentWorker.HANG_ONCE_SEED ? 2 : 1;
+			int attempts = workersByGame.getOrDefault(game.getIndex(), Set.of()).size();
+			if(attempts != expectedAttempts)
+				throw new AssertionError("Game " + game.getIndex() + " with seed " + seed + " was played by " + attempts + " workers instead of " + expectedAttempts + ".");
+		}
+
+		// Only a crash, a hang or the end of the tournament may retire a worker before it played its share of games
+		for(int i = 0; i < workers.size(); i++) {
+			List<Integer> workerGames = gamesByWorker.get(workers.get(i));
+			int lastSeed = gamesByIndex.get(workerGames.get(workerGames.size() - 1)).getSeed();
+			boolean endedEarly = lastSeed == ScriptedTournamentWorker.CRASH_ONCE_SEED || lastSeed == ScriptedTournamentWorker.HANG_ONCE_SEED
+					|| lastSeed == ScriptedTournamentWorker.CRASH_ALWAYS_SEED || i == workers.size() - 1;
+			if(workerGames.size() > GAMES_PER_PROCESS || workerGames.size() < GAMES_PER_PROCESS && !endedEarly)
+				throw new AssertionError("Worker " + (i + 1) + " played games " + workerGames + " instead of " + GAMES_PER_PROCESS + ".");
+		}
+		for(File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+		System.out.println("TournamentTest passed: " + played.size() + " attempts at " + games.size() + " games sent to " + workers.size() + " worker processes, largest first.");
+	}
+}
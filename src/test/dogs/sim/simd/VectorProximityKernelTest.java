@@ -0,0 +1,101 @@
+package dogs.sim.simd;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import dogs.sim.ParkLocation;
+import dogs.sim.ProximityKernel;
+
+
+public class VectorProximityKernelTest {
+
+	private static final int NUM_RANDOM_QUERIES = 10000;
+	private static final int MAX_CANDIDATES = 100;
+
+	// Enough candidates for three full vectors and a partial one of any lane count
+	private static final int MAX_LANE_CANDIDATES = 40;
+
+	private static final double[] RANGES = {1.0, 10.0};
+	private static final int NUM_WITHIN_RANGE = 3;
+
+	private static final ProximityKernel scalarKernel = new ProximityKernel();
+	private static final ProximityKernel vectorKernel = new VectorProximityKernel();
+
+	/**
+	 * Check that the vectorised proximity kernel keeps the same candidates as the scalar one
+	 *
+	 * Candidates at exactly 1 and 10 meters, the ranges of the obstacle and
+	 * nearest-owner checks, are compared along with those just beyond them, for
+	 * every number of candidates from none to several full vectors so that every
+	 * partial last vector is covered, and then random candidates across the park are.
+	 *
+	 */
+	public static void main(String[] args) {
+		checkBoundaries();
+		checkRandomQueries(new Random(42));
+		System.out.println("VectorProximityKernelTest passed: the vectorised kernel matches the scalar one.");
+	}
+
+	private static void checkBoundaries() {
+		double row = 50.0, column = 50.0;
+		for(double range : RANGES) {
+			// Offsets at exactly the range, along the axes and along a 3-4-5 diagonal, then a micrometer beyond it
+			double[][] offsets = {
+					{range, 0.0}, {0.0, -range}, {-0.6 * range, 0.8 * range},
+					{range + 1e-6, 0.0}, {0.0, -range - 1e-6}, {2 * range, 2 * range}
+			};
+			double[] rows = new double[offsets.length], columns = new double[offsets.length];
+			for(int i = 0; i < offsets.length; i++) {
+				rows[i] = row + offsets[i][0];
+				columns[i] = column + offsets[i][1];
+			}
+
+			for(double squaredBound : new double[] {range * range, ProximityKernel.getSquaredBound(range)}) {
+				for(int numCandidates = 0; numCandidates <= MAX_LANE_CANDIDATES; numCandidates++) {
+					int[] candidates = new int[numCandidates];
+					for(int i = 0; i < numCandidates; i++)
+						candidates[i] = i % offsets.length;
+					int numKept = check(row, column, rows, columns, candidates, numCandidates, squaredBound);
+
+					// The widened bound keeps exactly the candidates at the range
+					int numWithinRange = 0;
+					for(int i = 0; i < numCandidates; i++)
+						if(candidates[i] < NUM_WITHIN_RANGE)
+							numWithinRange++;
+					if(squaredBound > range * range && numKept != numWithinRange)
+						throw new AssertionError("Kept " + numKept + " of " + numCandidates + " candidates instead of the " + numWithinRange + " at " + range + " m.");
+				}
+			}
+		}
+	}
+
+	private static void checkRandomQueries(Random random) {
+		double[] rows = new double[MAX_CANDIDATES], columns = new double[MAX_CANDIDATES];
+		int[] candidates = new int[MAX_CANDIDATES];
+		for(int query = 0; query < NUM_RANDOM_QUERIES; query++) {
+			int numCandidates = random.nextInt(MAX_CANDIDATES + 1);
+			for(int i = 0; i < MAX_CANDIDATES; i++) {
+				rows[i] = ParkLocation.PARK_SIZE * random.nextDouble();
+				columns[i] = ParkLocation.PARK_SIZE * random.nextDouble();
+			}
+			for(int i = 0; i < numCandidates; i++)
+				candidates[i] = random.nextInt(MAX_CANDIDATES);
+
+			double row = ParkLocation.PARK_SIZE * random.nextDouble(), column = ParkLocation.PARK_SIZE * random.nextDouble();
+			double squaredBound = ProximityKernel.getSquaredBound(ParkLocation.PARK_SIZE * random.nextDouble() / 4);
+			check(row, column, rows, columns, candidates, numCandidates, squaredBound);
+		}
+	}
+
+	// Run both kernels on copies of the candidates and compare the candidates kept and their order
+	private static int check(double row, double column, double[] rows, double[] columns, int[] candidates, int numCandidates, double squaredBound) {
+		int[] scalarCandidates = Arrays.copyOf(candidates, numCandidates);
+		int[] vectorCandidates = Arrays.copyOf(candidates, numCandidates);
+		int scalarNumKept = scalarKernel.filterWithin(row, column, rows, columns, scalarCandidates, numCandidates, squaredBound);
+		int vectorNumKept = vectorKernel.filterWithin(row, column, rows, columns, vectorCandidates, numCandidates, squaredBound);
+		if(scalarNumKept != vectorNumKept || !Arrays.equals(scalarCandidates, 0, scalarNumKept, vectorCandidates, 0, vectorNumKept))
+			throw new AssertionError("Kernels differ on " + numCandidates + " candidates around (" + row + ", " + column + ") within " + Math.sqrt(squaredBound) + " m: scalar kept "
+					+ Arrays.toString(Arrays.copyOf(scalarCandidates, scalarNumKept)) + ", vectorised kept " + Arrays.toString(Arrays.copyOf(vectorCandidates, vectorNumKept)) + ".");
+		return scalarNumKept;
+	}
+}